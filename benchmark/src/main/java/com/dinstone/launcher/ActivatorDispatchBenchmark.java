@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the launcher's dispatch of the activator <code>start</code> and <code>stop</code> callbacks, through
+ * method handles for a duck-typed activator and directly for an {@link Activator}.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivatorDispatchBenchmark {
+
+    @Param({ "com.dinstone.launcher.NoopActivator", "com.dinstone.launcher.TypedNoopActivator" })
+    public String activator;
+
+    private File home;
+
+    private LifecycleManager lifecycle;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.silenceLogging();
+        home = BenchmarkFixtures.createHome("dispatch-bench");
+
+        Properties properties = new Properties();
+        properties.setProperty("application.home", home.getAbsolutePath());
+        properties.setProperty("application.activator", activator);
+        properties.setProperty("lifecycle.listen.enabled", "false");
+        lifecycle = new LifecycleManager(BenchmarkFixtures.configure(home, properties));
+        lifecycle.createActivator();
+        // only started activators are stopped
+        lifecycle.startActivator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFixtures.delete(home);
+    }
+
+    @Benchmark
+    public void start() {
+        lifecycle.startActivator();
+    }
+
+    @Benchmark
+    public void stop() {
+        lifecycle.stopActivator();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LifecycleManager#findActivatorsByJarService(ClassLoader, String)} when the service entry lives in
+ * the last of <code>jars</code> jar files, and the miss when no jar declares it.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivatorLookupBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int jars;
+
+    private File home;
+
+    private LifecycleManager lifecycle;
+
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.silenceLogging();
+        home = BenchmarkFixtures.createHome("lookup-bench");
+        BenchmarkFixtures.createJars(home, jars, NoopActivator.class.getName());
+
+        Properties properties = new Properties();
+        properties.setProperty("application.home", home.getAbsolutePath());
+        properties.setProperty("lifecycle.listen.enabled", "false");
+        lifecycle = new LifecycleManager(BenchmarkFixtures.configure(home, properties));
+        classLoader = lifecycle.createClassLoader(home.getAbsolutePath(), "${application.home}/lib/*.jar", null);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (classLoader instanceof Closeable) {
+            ((Closeable) classLoader).close();
+        }
+        BenchmarkFixtures.delete(home);
+    }
+
+    @Benchmark
+    public List<String> lookupHit() throws Exception {
+        return lifecycle.findActivatorsByJarService(classLoader, "application.activator");
+    }
+
+    @Benchmark
+    public List<String> lookupMiss() throws Exception {
+        return lifecycle.findActivatorsByJarService(classLoader, "application.missing");
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds synthetic launcher homes for the benchmarks.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public final class BenchmarkFixtures {
+
+    /** number of class entries written to each synthetic jar */
+    public static final int ENTRIES_PER_JAR = 20;
+
+    private static final Logger LAUNCHER_LOGGER = Logger.getLogger("com.dinstone.launcher");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Keep the launcher quiet while measuring.
+     */
+    public static void silenceLogging() {
+        LAUNCHER_LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * Create an empty launcher home with 'config', 'lib' and 'logs' dirs.
+     */
+    public static File createHome(String prefix) throws IOException {
+        File home = File.createTempFile(prefix, "");
+        if (!home.delete() || !home.mkdirs()) {
+            throw new IOException("can't create launcher home " + home);
+        }
+        new File(home, "config").mkdirs();
+        new File(home, "lib").mkdirs();
+        new File(home, "logs").mkdirs();
+        return home;
+    }
+
+    /**
+     * Write jars named <code>bench-NNNN.jar</code> into the home's 'lib' dir. When <code>activator</code> is not
+     * null, the last jar carries a <code>META-INF/services/application.activator</code> entry naming it, so a
+     * service lookup has to walk every jar.
+     */
+    public static void createJars(File home, int count, String activator) throws IOException {
+        File lib = new File(home, "lib");
+        Random random = new Random(count);
+        byte[] content = new byte[512];
+        for (int i = 0; i < count; i++) {
+            File jar = new File(lib, String.format("bench-%04d.jar", i));
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+            try {
+                for (int j = 0; j < ENTRIES_PER_JAR; j++) {
+                    random.nextBytes(content);
+                    out.putNextEntry(new JarEntry("bench/jar" + i + "/Class" + j + ".class"));
+                    out.write(content);
+                    out.closeEntry();
+                }
+                if (activator != null && i == count - 1) {
+                    out.putNextEntry(new JarEntry("META-INF/services/application.activator"));
+                    out.write((activator + "\n").getBytes("UTF-8"));
+                    out.closeEntry();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Write 'config/launcher.properties' and point the launcher system properties at the home.
+     */
+    public static Configuration configure(File home, Properties properties) throws IOException {
+        File file = new File(new File(home, "config"), "launcher.properties");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "benchmark launcher config");
+        } finally {
+            out.close();
+        }
+
+        System.setProperty("launcher.home", home.getAbsolutePath());
+        System.setProperty("launcher.config", file.toURI().toURL().toString());
+        return new Configuration();
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LifecycleManager#createClassLoader(String, String, ClassLoader)} over a 'lib' dir holding
+ * <code>jars</code> jar files, with and without the class path index.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderBenchmark {
+
+    private static final String CLASS_PATH = "${application.home}/config,${application.home}/lib/*.jar";
+
+    @Param({ "10", "100", "1000" })
+    public int jars;
+
+    @Param({ "true", "false" })
+    public String index;
+
+    private File home;
+
+    private LifecycleManager lifecycle;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.silenceLogging();
+        home = BenchmarkFixtures.createHome("classloader-bench");
+        BenchmarkFixtures.createJars(home, jars, null);
+
+        Properties properties = new Properties();
+        properties.setProperty("application.home", home.getAbsolutePath());
+        properties.setProperty("application.classpath.index.enabled", index);
+        properties.setProperty("lifecycle.listen.enabled", "false");
+        lifecycle = new LifecycleManager(BenchmarkFixtures.configure(home, properties));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFixtures.delete(home);
+    }
+
+    @Benchmark
+    public ClassLoader createClassLoader() throws Exception {
+        ClassLoader classLoader = lifecycle.createClassLoader(home.getAbsolutePath(), CLASS_PATH, null);
+        if (classLoader instanceof Closeable) {
+            ((Closeable) classLoader).close();
+        }
+        return classLoader;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Configuration#getProperty(String)} hits and misses; a miss falls through to the system
+ * properties.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    private File home;
+
+    private Configuration config;
+
+    @Setup
+    public void setUp() throws Exception {
+        home = BenchmarkFixtures.createHome("config-bench");
+
+        Properties properties = new Properties();
+        for (int i = 0; i < 32; i++) {
+            properties.setProperty("bench.property." + i, "value-" + i);
+        }
+        properties.setProperty("application.activator", NoopActivator.class.getName());
+        config = BenchmarkFixtures.configure(home, properties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFixtures.delete(home);
+    }
+
+    @Benchmark
+    public String getPropertyHit() {
+        return config.getProperty("application.activator");
+    }
+
+    @Benchmark
+    public String getPropertyMiss() {
+        return config.getProperty("application.missing");
+    }
+
+}
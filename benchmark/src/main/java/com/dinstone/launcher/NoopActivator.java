@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+/**
+ * Activator with empty callbacks, used to measure the launcher's own dispatch cost.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class NoopActivator {
+
+    private long starts;
+
+    private long stops;
+
+    public void start() {
+        starts++;
+    }
+
+    public void stop() {
+        stops++;
+    }
+
+    public long getStarts() {
+        return starts;
+    }
+
+    public long getStops() {
+        return stops;
+    }
+
+}
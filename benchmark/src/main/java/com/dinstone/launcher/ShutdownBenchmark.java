@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the SHUTDOWN round-trip: {@link LifecycleManager#stop()} sends the command, the awaiting listener stops
+ * the activator and replies.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShutdownBenchmark {
+
+    private static final String LISTEN_PORT = "15555";
+
+    private File home;
+
+    private Configuration config;
+
+    private LifecycleManager lifecycle;
+
+    private Thread launchThread;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        BenchmarkFixtures.silenceLogging();
+        home = BenchmarkFixtures.createHome("shutdown-bench");
+
+        Properties properties = new Properties();
+        properties.setProperty("application.home", home.getAbsolutePath());
+        properties.setProperty("application.activator", NoopActivator.class.getName());
+        properties.setProperty("lifecycle.listen.enabled", "true");
+        properties.setProperty("lifecycle.listen.port", LISTEN_PORT);
+        config = BenchmarkFixtures.configure(home, properties);
+    }
+
+    @Setup(Level.Invocation)
+    public void launch() throws Exception {
+        lifecycle = new LifecycleManager(config);
+        launchThread = new Thread("launch-thread") {
+
+            @Override
+            public void run() {
+                try {
+                    lifecycle.start();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        launchThread.start();
+
+        // the listener is bound before the startup report is finished
+        while (lifecycle.getStartupReport().getTotalNanos() < 0) {
+            if (!launchThread.isAlive()) {
+                throw new IllegalStateException("launcher failed to start");
+            }
+            Thread.yield();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void awaitExit() throws InterruptedException {
+        launchThread.join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFixtures.delete(home);
+    }
+
+    @Benchmark
+    public void shutdown() throws Exception {
+        lifecycle.stop();
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+/**
+ * Application entry point started and stopped by the launcher. Activators that don't implement this interface but
+ * have public <code>start()</code> and <code>stop()</code> methods are still supported.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface Activator {
+
+    /**
+     * Called once before {@link #start()}, on the launcher main thread.
+     */
+    void init(LauncherContext context) throws Exception;
+
+    void start() throws Exception;
+
+    void stop() throws Exception;
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The activators of an application ordered by their {@link DependsOn} declarations. An activator starts once all
+ * activators it depends on are started, so independent activators start in parallel, and stops once all activators
+ * depending on it are stopped.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ActivatorGraph {
+
+    private static final Logger LOG = Logger.getLogger(ActivatorGraph.class.getName());
+
+    /** the activators in dependency order */
+    private final List<Node> nodes;
+
+    private final boolean async;
+
+    /**
+     * @throws IllegalStateException
+     *             if a dependency is not one of the activators or the dependencies form a cycle
+     */
+    public ActivatorGraph(List<?> activators) throws Exception {
+        Map<String, Node> named = new LinkedHashMap<String, Node>();
+        boolean async = false;
+        for (Object activator : activators) {
+            Node node = new Node(activator.getClass().getName(), new ActivatorInvoker(activator));
+            if (named.put(node.name, node) != null) {
+                throw new IllegalStateException("duplicate activator " + node.name);
+            }
+            async |= node.invoker.isAsync();
+        }
+        this.async = async;
+
+        for (Node node : named.values()) {
+            DependsOn dependsOn = node.invoker.getActivator().getClass().getAnnotation(DependsOn.class);
+            if (dependsOn == null) {
+                continue;
+            }
+            for (String name : dependsOn.value()) {
+                Node dependency = named.get(name);
+                if (dependency == null) {
+                    throw new IllegalStateException("activator " + node.name + " depends on unknown activator " + name);
+                }
+                node.dependencies.add(dependency);
+                dependency.dependents.add(node);
+            }
+        }
+
+        this.nodes = sort(named.values());
+    }
+
+    public List<String> getNames() {
+        List<String> names = new ArrayList<String>(nodes.size());
+        for (Node node : nodes) {
+            names.add(node.name);
+        }
+        return names;
+    }
+
+    public List<Object> getActivators() {
+        List<Object> activators = new ArrayList<Object>(nodes.size());
+        for (Node node : nodes) {
+            activators.add(node.invoker.getActivator());
+        }
+        return activators;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return true if any activator starts in the background
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Initialize the activators in dependency order, on the calling thread.
+     */
+    public void init(LauncherContext context) throws Exception {
+        for (Node node : nodes) {
+            node.invoker.init(context);
+        }
+    }
+
+    /**
+     * Start every activator on the executor once its dependencies are started; a single activator is started on
+     * the calling thread.
+     *
+     * @return a stage completed when all activators are started, or completed exceptionally by the first failure
+     */
+    public CompletionStage<Void> start(final Executor executor) {
+        if (nodes.size() == 1) {
+            return nodes.get(0).start();
+        }
+
+        Map<Node, CompletableFuture<Void>> started = new HashMap<Node, CompletableFuture<Void>>();
+        for (final Node node : nodes) {
+            started.put(node, after(node.dependencies, started).thenComposeAsync(
+                new Function<Void, CompletionStage<Void>>() {
+
+                    @Override
+                    public CompletionStage<Void> apply(Void ignore) {
+                        return node.start();
+                    }
+                }, executor));
+        }
+        return CompletableFuture.allOf(started.values().toArray(new CompletableFuture<?>[started.size()]));
+    }
+
+    /**
+     * Stop every started activator on the executor once the activators depending on it are stopped, and wait for
+     * all of them; a single activator, or all of them if there is no executor (a start failed before it was
+     * created), are stopped in reverse dependency order on the calling thread.
+     *
+     * @return false if an activator failed to stop
+     */
+    public boolean stop(Executor executor) {
+        return stop(executor, null);
+    }
+
+    /**
+     * Stop the activators like {@link #stop(Executor)}, timing each one as a <code>stop.&lt;class name&gt;</code>
+     * phase of the watchdog.
+     */
+    public boolean stop(final Executor executor, final ShutdownWatchdog watchdog) {
+        if (nodes.size() == 1 || executor == null) {
+            boolean success = true;
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                success &= nodes.get(i).stop(watchdog);
+            }
+            return success;
+        }
+
+        final AtomicBoolean success = new AtomicBoolean(true);
+        Map<Node, CompletableFuture<Void>> stopped = new HashMap<Node, CompletableFuture<Void>>();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            final Node node = nodes.get(i);
+            stopped.put(node, after(node.dependents, stopped).thenRunAsync(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!node.stop(watchdog)) {
+                        success.set(false);
+                    }
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(stopped.values().toArray(new CompletableFuture<?>[stopped.size()])).join();
+        return success.get();
+    }
+
+    /**
+     * @return a future completed when the futures of all the given nodes are completed
+     */
+    private static CompletableFuture<Void> after(List<Node> nodes, Map<Node, CompletableFuture<Void>> futures) {
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[nodes.size()];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencies[i] = futures.get(nodes.get(i));
+        }
+        return CompletableFuture.allOf(dependencies);
+    }
+
+    /**
+     * Order the nodes so that every node follows its dependencies, keeping the declaration order otherwise.
+     */
+    private static List<Node> sort(Iterable<Node> nodes) {
+        List<Node> sorted = new ArrayList<Node>();
+        Map<Node, Boolean> visited = new HashMap<Node, Boolean>();
+        for (Node node : nodes) {
+            visit(node, visited, sorted, new ArrayList<Node>());
+        }
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private static void visit(Node node, Map<Node, Boolean> visited, List<Node> sorted, List<Node> path) {
+        Boolean done = visited.get(node);
+        if (Boolean.TRUE.equals(done)) {
+            return;
+        }
+
+        path.add(node);
+        if (Boolean.FALSE.equals(done)) {
+            StringBuilder cycle = new StringBuilder();
+            for (Node n : path.subList(path.indexOf(node), path.size())) {
+                cycle.append(cycle.length() == 0 ? "" : " -> ").append(n.name);
+            }
+            throw new IllegalStateException("activator dependency cycle: " + cycle);
+        }
+
+        visited.put(node, Boolean.FALSE);
+        for (Node dependency : node.dependencies) {
+            visit(dependency, visited, sorted, path);
+        }
+        visited.put(node, Boolean.TRUE);
+        path.remove(path.size() - 1);
+        sorted.add(node);
+    }
+
+    private static class Node {
+
+        final String name;
+
+        final ActivatorInvoker invoker;
+
+        final List<Node> dependencies = new ArrayList<Node>();
+
+        final List<Node> dependents = new ArrayList<Node>();
+
+        volatile boolean started;
+
+        Node(String name, ActivatorInvoker invoker) {
+            this.name = name;
+            this.invoker = invoker;
+        }
+
+        CompletionStage<Void> start() {
+            final long begin = System.nanoTime();
+            CompletionStage<Void> stage;
+            try {
+                started = true;
+                stage = invoker.start();
+            } catch (Exception e) {
+                CompletableFuture<Void> failed = new CompletableFuture<Void>();
+                failed.completeExceptionally(e);
+                stage = failed;
+            }
+
+            return stage.whenComplete(new BiConsumer<Void, Throwable>() {
+
+                @Override
+                public void accept(Void result, Throwable error) {
+                    if (error == null) {
+                        LOG.log(Level.FINE, "Activator {0} startup in {1} ms",
+                            new Object[] { name, (System.nanoTime() - begin) / 1000000 });
+                    } else {
+                        LOG.log(Level.SEVERE, "Activator " + name + " startup failure", error);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Stop the activator if its start was called.
+         *
+         * @return false if the stop failed
+         */
+        boolean stop(ShutdownWatchdog watchdog) {
+            if (!started) {
+                return true;
+            }
+
+            String phase = "stop." + name;
+            long begin = watchdog == null ? System.nanoTime() : watchdog.begin(phase);
+            try {
+                invoker.stop();
+                LOG.log(Level.FINE, "Activator {0} shutdown in {1} ms",
+                    new Object[] { name, (System.nanoTime() - begin) / 1000000 });
+                return true;
+            } catch (Exception e) {
+                LOG.log(Level.SEVERE, "Activator " + name + " stop error", e);
+                return false;
+            } finally {
+                if (watchdog != null) {
+                    watchdog.end(phase, begin);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Dispatches the lifecycle callbacks of an activator. {@link Activator} implementations are called directly, other
+ * activators through method handles resolved once from their public <code>init(LauncherContext)</code>,
+ * <code>start()</code> and <code>stop()</code> methods; <code>init</code> is optional and a <code>start()</code>
+ * returning a {@link CompletionStage} is treated as an asynchronous start.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ActivatorInvoker {
+
+    private static final CompletionStage<Void> STARTED = CompletableFuture.completedFuture(null);
+
+    private final Object activator;
+
+    private final MethodHandle init;
+
+    private final MethodHandle start;
+
+    private final MethodHandle stop;
+
+    private final boolean async;
+
+    public ActivatorInvoker(Object activator) throws NoSuchMethodException, IllegalAccessException {
+        this.activator = activator;
+        if (activator instanceof Activator) {
+            this.init = null;
+            this.start = null;
+            this.stop = null;
+            this.async = activator instanceof AsyncActivator;
+            return;
+        }
+
+        Class<?> type = activator.getClass();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        Method startMethod = type.getMethod("start");
+        this.async = CompletionStage.class.isAssignableFrom(startMethod.getReturnType());
+        this.start = lookup.unreflect(startMethod).bindTo(activator)
+            .asType(MethodType.methodType(async ? CompletionStage.class : void.class));
+        this.stop = lookup.unreflect(type.getMethod("stop")).bindTo(activator)
+            .asType(MethodType.methodType(void.class));
+
+        MethodHandle initHandle = null;
+        try {
+            initHandle = lookup.unreflect(type.getMethod("init", LauncherContext.class)).bindTo(activator)
+                .asType(MethodType.methodType(void.class, LauncherContext.class));
+        } catch (NoSuchMethodException e) {
+            // init is optional
+        }
+        this.init = initHandle;
+    }
+
+    public Object getActivator() {
+        return activator;
+    }
+
+    /**
+     * @return true if the activator starts in the background
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void init(LauncherContext context) throws Exception {
+        if (activator instanceof Activator) {
+            ((Activator) activator).init(context);
+        } else if (init != null) {
+            try {
+                init.invokeExact(context);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    /**
+     * Start the activator.
+     *
+     * @return a stage completed when the activator is started, already completed unless the activator is
+     *         asynchronous
+     */
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Void> start() throws Exception {
+        if (activator instanceof AsyncActivator) {
+            return started(((AsyncActivator) activator).startAsync());
+        } else if (activator instanceof Activator) {
+            ((Activator) activator).start();
+            return STARTED;
+        }
+
+        try {
+            if (async) {
+                return started((CompletionStage<Void>) (CompletionStage<?>) start.invokeExact());
+            }
+            start.invokeExact();
+            return STARTED;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void stop() throws Exception {
+        if (activator instanceof Activator) {
+            ((Activator) activator).stop();
+            return;
+        }
+
+        try {
+            stop.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static CompletionStage<Void> started(CompletionStage<Void> stage) {
+        return stage == null ? STARTED : stage;
+    }
+
+    private static Exception rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return t instanceof Exception ? (Exception) t : new RuntimeException(t);
+    }
+
+}
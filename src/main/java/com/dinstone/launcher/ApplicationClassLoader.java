@@ -0,0 +1,553 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Constructor;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * Application class loader that goes straight to the owning jar through a {@link ClasspathIndex}.
+ * <p>
+ * Directories and non-file URLs on the class path are not indexed. The locations are searched in class path order,
+ * the index only skips the jars that can't contain a name; when every location that is not indexed comes first, like
+ * the default <code>${application.home}/config</code> entry, they are searched together before the jars. Class names
+ * that were not found anywhere are remembered so that repeated probes fail fast.
+ * <p>
+ * The loader is parallel capable, classes are loaded under a per class name lock. In child-first mode the class path
+ * is searched before the parent, except for the platform and launcher classes, which are always shared.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ApplicationClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private static final int MAX_MISSES = 10000;
+
+    private static final String[] PARENT_ONLY_PACKAGES = { "java.", "javax.", "jdk.", "sun.", "com.sun.",
+            "org.w3c.dom.", "org.xml.sax.", "com.dinstone.launcher." };
+
+    private static final Constructor<JarFile> VERSIONED_JAR = versionedJarConstructor();
+
+    private final URL[] classPath;
+
+    private final ClasspathIndex index;
+
+    private final URL[] jarUrls;
+
+    private final AtomicReferenceArray<JarFile> jarFiles;
+
+    private final boolean searchFallback;
+
+    /** the locations that are not indexed, one loader each to probe them in class path order, or null */
+    private final URLClassLoader[] fallbackProbes;
+
+    /** the number of indexed jars in front of each location that is not indexed */
+    private final int[] jarsBefore;
+
+    private final boolean childFirst;
+
+    private final Set<String> misses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicLong loadedClasses = new AtomicLong();
+
+    private final AtomicLong lookupMisses = new AtomicLong();
+
+    private final AtomicLong findClassNanos = new AtomicLong();
+
+    private volatile ClassListRecorder recorder;
+
+    /**
+     * Create a parent-first loader without an index.
+     */
+    public ApplicationClassLoader(URL[] classPath, ClassLoader parent) throws MalformedURLException {
+        this(classPath, classPath, null, null, parent, false);
+    }
+
+    public ApplicationClassLoader(URL[] classPath, URL[] fallback, ClasspathIndex index, ClassLoader parent)
+            throws MalformedURLException {
+        this(classPath, fallback, index, null, parent, false);
+    }
+
+    /**
+     * @param classPath
+     *            every class path location, in order
+     * @param fallback
+     *            the locations not covered by the index
+     * @param index
+     *            the index of the jar locations, or null if every location is a fallback
+     * @param jarFiles
+     *            the already open jar files of the index, or null to open them on demand
+     * @param childFirst
+     *            search the class path before the parent
+     */
+    public ApplicationClassLoader(URL[] classPath, URL[] fallback, ClasspathIndex index, List<JarFile> jarFiles,
+            ClassLoader parent, boolean childFirst) throws MalformedURLException {
+        super(fallback, parent);
+        this.classPath = classPath.clone();
+        this.index = index;
+        this.searchFallback = fallback.length > 0;
+        this.childFirst = childFirst;
+
+        List<File> jars = index == null ? Collections.<File> emptyList() : index.getJars();
+        this.jarUrls = new URL[jars.size()];
+        for (int i = 0; i < jarUrls.length; i++) {
+            jarUrls[i] = jars.get(i).toURI().toURL();
+        }
+        this.jarFiles = new AtomicReferenceArray<JarFile>(jarUrls.length);
+        if (jarFiles != null) {
+            for (int i = 0; i < jarUrls.length; i++) {
+                this.jarFiles.set(i, jarFiles.get(i));
+            }
+        }
+
+        this.jarsBefore = new int[fallback.length];
+        int k = 0;
+        int jarCount = 0;
+        boolean fallbackFirst = true;
+        for (URL url : classPath) {
+            if (k < fallback.length && url.toString().equals(fallback[k].toString())) {
+                fallbackFirst &= jarCount == 0;
+                jarsBefore[k++] = jarCount;
+            } else {
+                jarCount++;
+            }
+        }
+        for (; k < fallback.length; k++) {
+            fallbackFirst = false;
+            jarsBefore[k] = jarCount;
+        }
+
+        if (index == null || fallbackFirst) {
+            this.fallbackProbes = null;
+        } else {
+            this.fallbackProbes = new URLClassLoader[fallback.length];
+            for (k = 0; k < fallback.length; k++) {
+                fallbackProbes[k] = new URLClassLoader(new URL[] { fallback[k] }, null);
+            }
+        }
+    }
+
+    @Override
+    public URL[] getURLs() {
+        return classPath.clone();
+    }
+
+    public ClasspathIndex getIndex() {
+        return index;
+    }
+
+    public boolean isChildFirst() {
+        return childFirst;
+    }
+
+    /**
+     * Record the classes defined from now on, null stops recording.
+     */
+    public void setRecorder(ClassListRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return the number of classes defined by this loader
+     */
+    public long getLoadedClassCount() {
+        return loadedClasses.get();
+    }
+
+    /**
+     * @return the number of class lookups that found nothing on the class path
+     */
+    public long getLookupMissCount() {
+        return lookupMisses.get();
+    }
+
+    /**
+     * @return the nanoseconds spent in {@link #findClass(String)}
+     */
+    public long getFindClassNanos() {
+        return findClassNanos.get();
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!childFirst || isParentOnly(name)) {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                try {
+                    c = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    ClassLoader parent = getParent();
+                    c = parent != null ? parent.loadClass(name) : Class.forName(name, false, null);
+                }
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (childFirst) {
+            URL url = findResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return super.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        if (!childFirst) {
+            return super.getResources(name);
+        }
+
+        List<URL> urls = Collections.list(findResources(name));
+        ClassLoader parent = getParent();
+        if (parent != null) {
+            urls.addAll(Collections.list(parent.getResources(name)));
+        }
+        return Collections.enumeration(urls);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        long begin = System.nanoTime();
+        try {
+            Class<?> c = findClass0(name);
+            loadedClasses.incrementAndGet();
+            ClassListRecorder recorder = this.recorder;
+            if (recorder != null) {
+                recorder.record(name);
+            }
+            return c;
+        } catch (ClassNotFoundException e) {
+            lookupMisses.incrementAndGet();
+            throw e;
+        } finally {
+            findClassNanos.addAndGet(System.nanoTime() - begin);
+        }
+    }
+
+    private Class<?> findClass0(String name) throws ClassNotFoundException {
+        if (misses.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+
+        if (fallbackProbes == null && searchFallback) {
+            try {
+                return super.findClass(name);
+            } catch (ClassNotFoundException e) {
+                // try the indexed jars
+            }
+        }
+
+        if (index != null) {
+            String path = name.replace('.', '/').concat(".class");
+            int k = 0;
+            for (int i : index.lookup(path)) {
+                // the locations that are not indexed and come before this jar
+                for (; fallbackProbes != null && k < fallbackProbes.length && jarsBefore[k] <= i; k++) {
+                    if (fallbackProbes[k].findResource(path) != null) {
+                        return super.findClass(name);
+                    }
+                }
+                try {
+                    JarFile jar = jarFile(i);
+                    JarEntry entry = jar.getJarEntry(path);
+                    if (entry != null) {
+                        return defineClass(name, i, jar, entry);
+                    }
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+            for (; fallbackProbes != null && k < fallbackProbes.length; k++) {
+                if (fallbackProbes[k].findResource(path) != null) {
+                    return super.findClass(name);
+                }
+            }
+        }
+
+        if (misses.size() < MAX_MISSES) {
+            misses.add(name);
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (fallbackProbes != null) {
+            List<URL> urls = findOrdered(name, true);
+            return urls.isEmpty() ? null : urls.get(0);
+        }
+
+        if (searchFallback) {
+            URL url = super.findResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+
+        if (index != null) {
+            for (int i : index.lookup(name)) {
+                URL url = jarResource(i, name);
+                if (url != null) {
+                    return url;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (fallbackProbes != null) {
+            return Collections.enumeration(findOrdered(name, false));
+        }
+
+        List<URL> urls = new ArrayList<URL>();
+        if (searchFallback) {
+            urls.addAll(Collections.list(super.findResources(name)));
+        }
+
+        if (index != null) {
+            for (int i : index.lookup(name)) {
+                URL url = jarResource(i, name);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+
+    /**
+     * Search the indexed jars and the locations that are not indexed in class path order.
+     */
+    private List<URL> findOrdered(String name, boolean first) {
+        List<URL> urls = new ArrayList<URL>(1);
+        int k = 0;
+        for (int i : index.lookup(name)) {
+            for (; k < fallbackProbes.length && jarsBefore[k] <= i; k++) {
+                if (addResource(urls, fallbackProbes[k].findResource(name)) && first) {
+                    return urls;
+                }
+            }
+            if (addResource(urls, jarResource(i, name)) && first) {
+                return urls;
+            }
+        }
+        for (; k < fallbackProbes.length; k++) {
+            if (addResource(urls, fallbackProbes[k].findResource(name)) && first) {
+                return urls;
+            }
+        }
+        return urls;
+    }
+
+    private static boolean addResource(List<URL> urls, URL url) {
+        return url != null && urls.add(url);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fallbackProbes != null) {
+            for (URLClassLoader probe : fallbackProbes) {
+                try {
+                    probe.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        try {
+            super.close();
+        } finally {
+            for (int i = 0; i < jarFiles.length(); i++) {
+                JarFile jar = jarFiles.getAndSet(i, null);
+                if (jar != null) {
+                    try {
+                        jar.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isParentOnly(String name) {
+        for (String prefix : PARENT_ONLY_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private URL jarResource(int i, String name) {
+        try {
+            if (jarFile(i).getJarEntry(name) == null) {
+                return null;
+            }
+            return new URL("jar:" + jarUrls[i] + "!/" + encodePath(name));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Class<?> defineClass(String name, int i, JarFile jar, JarEntry entry) throws IOException {
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            definePackageIfNeeded(name.substring(0, dot), jar.getManifest(), jarUrls[i]);
+        }
+
+        byte[] bytes = read(jar.getInputStream(entry), entry.getSize());
+        // code signers are only known once the entry has been read
+        CodeSigner[] signers = entry.getCodeSigners();
+        return defineClass(name, bytes, 0, bytes.length, new CodeSource(jarUrls[i], signers));
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfNeeded(String packageName, Manifest manifest, URL url) {
+        if (getPackage(packageName) != null) {
+            return;
+        }
+
+        try {
+            if (manifest != null) {
+                definePackage(packageName, manifest, url);
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // defined concurrently by another thread
+        }
+    }
+
+    private JarFile jarFile(int i) throws IOException {
+        JarFile jar = jarFiles.get(i);
+        if (jar == null) {
+            jar = openJar(index.getJars().get(i));
+            if (!jarFiles.compareAndSet(i, null, jar)) {
+                jar.close();
+                jar = jarFiles.get(i);
+            }
+        }
+        return jar;
+    }
+
+    static JarFile openJar(File file) throws IOException {
+        if (VERSIONED_JAR != null) {
+            try {
+                Object version = Runtime.class.getMethod("version").invoke(null);
+                return VERSIONED_JAR.newInstance(file, Boolean.TRUE, ZipFile.OPEN_READ, version);
+            } catch (Exception e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+            }
+        }
+        return new JarFile(file);
+    }
+
+    /**
+     * Resolve <code>JarFile(File, boolean, int, Runtime.Version)</code>, so multi-release jars are read with the
+     * entries of the running platform on JDK 9 and later.
+     */
+    @SuppressWarnings("unchecked")
+    private static Constructor<JarFile> versionedJarConstructor() {
+        try {
+            Class<?> versionClass = Class.forName("java.lang.Runtime$Version");
+            return JarFile.class.getConstructor(File.class, boolean.class, int.class, versionClass);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] read(InputStream in, long size) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 4096);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String encodePath(String name) throws UnsupportedEncodingException {
+        StringBuilder sb = null;
+        for (int i = 0; i < name.length(); i++) {
+            int c = name.codePointAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "/-_.!~*'()$+,;:@&=".indexOf(c) >= 0;
+            if (safe) {
+                if (sb != null) {
+                    sb.append((char) c);
+                }
+                continue;
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(name.length() + 16).append(name, 0, i);
+            }
+            for (byte b : new String(Character.toChars(c)).getBytes("UTF-8")) {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+            i += Character.charCount(c) - 1;
+        }
+        return sb == null ? name : sb.toString();
+    }
+
+}
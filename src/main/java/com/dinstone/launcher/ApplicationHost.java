@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts several applications in the launcher JVM. Each application has its own home, class path and activators,
+ * loaded by its own class loader under the shared common class loader, and is started and stopped on its own.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ApplicationHost {
+
+    private static final Logger LOG = Logger.getLogger(ApplicationHost.class.getName());
+
+    public static final String MESSAGE_STARTED = "STARTED";
+
+    public static final String MESSAGE_STOPPED = "STOPPED";
+
+    public static final String MESSAGE_UNKNOWN = "UNKNOWN";
+
+    public static final String MESSAGE_RUNNING = "RUNNING";
+
+    public static final String MESSAGE_NOT_RUNNING = "NOT_RUNNING";
+
+    public static final String MESSAGE_FAILED = "FAILED";
+
+    private final Configuration config;
+
+    private final List<String> names;
+
+    private final ClassLoader commonClassLoader;
+
+    /** the lifecycle of every application started so far, a stopped application is started by a new one */
+    private final Map<String, LifecycleManager> applications = new LinkedHashMap<String, LifecycleManager>();
+
+    /**
+     * @param commonClassLoader
+     *            the parent of the application class loaders
+     */
+    public ApplicationHost(Configuration config, List<String> names, ClassLoader commonClassLoader) {
+        this.config = config;
+        this.names = new ArrayList<String>(names);
+        this.commonClassLoader = commonClassLoader;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Start the applications in parallel and wait until they are started or failed.
+     *
+     * @return the number of applications that failed to start
+     */
+    public int startAll() throws InterruptedException {
+        final List<String> failed = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final String name : names) {
+            Thread thread = new Thread("app-starter-" + name) {
+
+                @Override
+                public void run() {
+                    if (!MESSAGE_STARTED.equals(ApplicationHost.this.start(name))) {
+                        synchronized (failed) {
+                            failed.add(name);
+                        }
+                    }
+                }
+            };
+            thread.setContextClassLoader(commonClassLoader);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return failed.size();
+    }
+
+    /**
+     * Start the application on a thread of its own, which the activators see as the main thread, and wait until its
+     * activators are started.
+     *
+     * @return {@value #MESSAGE_STARTED}, or {@value #MESSAGE_FAILED}, {@value #MESSAGE_RUNNING} or
+     *         {@value #MESSAGE_UNKNOWN}
+     */
+    public String start(final String name) {
+        if (!names.contains(name)) {
+            return MESSAGE_UNKNOWN;
+        }
+
+        final LifecycleManager application;
+        synchronized (applications) {
+            LifecycleManager running = applications.get(name);
+            if (running != null && !isStopped(running)) {
+                return MESSAGE_RUNNING;
+            }
+            application = new LifecycleManager(config.forApplication(name), new StartupReport(), name,
+                commonClassLoader);
+            applications.put(name, application);
+        }
+
+        final String[] reply = new String[1];
+        Thread thread = startThread(name, new Runnable() {
+
+            @Override
+            public void run() {
+                reply[0] = start(name, application);
+            }
+        });
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MESSAGE_FAILED;
+        }
+        return reply[0];
+    }
+
+    private String start(String name, LifecycleManager application) {
+        try {
+            LOG.log(Level.INFO, "Application {0} is starting", name);
+            application.start();
+            return application.getState() == LifecycleState.FAILED ? MESSAGE_FAILED : MESSAGE_STARTED;
+        } catch (Throwable e) {
+            LOG.log(Level.SEVERE, "Application " + name + " startup failure", e);
+            application.stopApplication();
+            return MESSAGE_FAILED;
+        }
+    }
+
+    /**
+     * Stop the application and release its class loader.
+     *
+     * @return {@value #MESSAGE_STOPPED}, or {@value #MESSAGE_NOT_RUNNING} or {@value #MESSAGE_UNKNOWN}
+     */
+    public String stop(String name) {
+        if (!names.contains(name)) {
+            return MESSAGE_UNKNOWN;
+        }
+
+        LifecycleManager application;
+        synchronized (applications) {
+            application = applications.get(name);
+        }
+        if (application == null || isStopped(application)) {
+            return MESSAGE_NOT_RUNNING;
+        }
+
+        LOG.log(Level.INFO, "Application {0} is stopping", name);
+        application.stopApplication();
+        return MESSAGE_STOPPED;
+    }
+
+    /**
+     * Stop the applications in reverse order.
+     */
+    public void stopAll() {
+        List<String> reverse = new ArrayList<String>(names);
+        Collections.reverse(reverse);
+        for (String name : reverse) {
+            stop(name);
+        }
+    }
+
+    /**
+     * @return the lifecycle of the application, or null if it was never started
+     */
+    public LifecycleManager get(String name) {
+        synchronized (applications) {
+            return applications.get(name);
+        }
+    }
+
+    /**
+     * @return the state of every application in <code>key=value</code> lines
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            LifecycleManager application = get(name);
+            sb.append("app.").append(name).append(".state=")
+                .append(application == null ? LifecycleState.NEW : application.getState()).append('\n');
+            if (application != null) {
+                sb.append("app.").append(name).append(".ready=").append(application.isReady()).append('\n');
+                sb.append("app.").append(name).append(".generation=").append(application.getGeneration())
+                    .append('\n');
+                sb.append("app.").append(name).append(".home=").append(application.getApplicationHome())
+                    .append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isStopped(LifecycleManager application) {
+        LifecycleState state = application.getState();
+        return application.isStopping() || state == LifecycleState.FAILED || state == LifecycleState.STOPPED;
+    }
+
+    private Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, "app-" + name);
+        thread.setContextClassLoader(commonClassLoader);
+        thread.start();
+        return thread;
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Activator that starts in the background. The launcher calls {@link #startAsync()} instead of {@link #start()}, and
+ * reports the application ready when the returned stage completes.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface AsyncActivator extends Activator {
+
+    /**
+     * Begin the startup without blocking the caller.
+     *
+     * @return a stage completed when the application is ready, or completed exceptionally if the startup failed
+     */
+    CompletionStage<Void> startAsync() throws Exception;
+
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that queues the records in a bounded ring buffer, allocated once, and publishes them to its target
+ * handlers on a writer thread of its own, flushing the targets once per batch, so the logging threads don't wait
+ * for the I/O. Configured in the logging properties with the prefix <code>com.dinstone.launcher.AsyncHandler</code>:
+ * <ul>
+ * <li><code>.target</code> the target handler classes, comma separated, configured as usual, default is
+ * <code>java.util.logging.ConsoleHandler</code></li>
+ * <li><code>.capacity</code> the records the buffer holds, default is 8192</li>
+ * <li><code>.overflow</code> what a full buffer does: <code>block</code> the logging thread until there is room,
+ * <code>drop-oldest</code> record or <code>drop-below-level</code> drop the records below <code>.overflow.level</code>
+ * and block for the others, default is <code>block</code></li>
+ * <li><code>.overflow.level</code> default is <code>WARNING</code></li>
+ * <li><code>.level</code> default is <code>ALL</code></li>
+ * </ul>
+ * The dropped records are counted and reported by a warning of the writer. {@link #close()} and so
+ * {@link JdkLogManager#clear()} publish the queued records before they close the targets, and they are flushed when
+ * the JVM exits.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * What a full buffer does with a record.
+     */
+    public enum Overflow {
+        BLOCK, DROP_OLDEST, DROP_BELOW_LEVEL;
+
+        static Overflow parse(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int BATCH_SIZE = 256;
+
+    private final Handler[] targets;
+
+    private final Overflow overflow;
+
+    private final int overflowLevel;
+
+    private final LogRecord[] ring;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final Condition drained = lock.newCondition();
+
+    /** the sequence of the next record taken and of the next record put, guarded by the lock */
+    private long head;
+
+    private long tail;
+
+    /** the sequence up to which the records are published, guarded by the lock */
+    private long published;
+
+    private long dropped;
+
+    private long droppedReported;
+
+    private boolean closed;
+
+    private final Thread writer;
+
+    private final Thread exitFlush;
+
+    /**
+     * Create the handler configured by the logging properties.
+     */
+    public AsyncHandler() {
+        this(configuredTargets(), configuredCapacity(), configuredOverflow(), configuredLevel(".overflow.level",
+            Level.WARNING));
+        setLevel(configuredLevel(".level", Level.ALL));
+    }
+
+    /**
+     * @param overflowLevel
+     *            the lowest level not dropped by {@link Overflow#DROP_BELOW_LEVEL}
+     */
+    public AsyncHandler(Handler[] targets, int capacity, Overflow overflow, Level overflowLevel) {
+        this.targets = targets.clone();
+        this.overflow = overflow;
+        this.overflowLevel = overflowLevel.intValue();
+        this.ring = new LogRecord[Math.max(1, capacity)];
+
+        writer = new Thread("launcher-log-writer") {
+
+            @Override
+            public void run() {
+                write();
+            }
+        };
+        writer.setDaemon(true);
+        writer.setContextClassLoader(AsyncHandler.class.getClassLoader());
+        writer.start();
+
+        // JdkLogManager doesn't close the handlers when the JVM exits, unless the launcher clears it
+        exitFlush = new Thread("launcher-log-flush") {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        exitFlush.setContextClassLoader(AsyncHandler.class.getClassLoader());
+        Runtime.getRuntime().addShutdownHook(exitFlush);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (record == null || !isLoggable(record)) {
+            return;
+        }
+        if (Thread.currentThread() == writer) {
+            // logged by a target, waiting for room would wait for this thread
+            publishToTargets(record);
+            return;
+        }
+        // the caller is inferred from the stack of the logging thread
+        record.getSourceClassName();
+
+        lock.lock();
+        try {
+            while (!closed && tail - head == ring.length) {
+                if (overflow == Overflow.DROP_OLDEST) {
+                    ring[(int) (head++ % ring.length)] = null;
+                    dropped++;
+                } else if (overflow == Overflow.DROP_BELOW_LEVEL && record.getLevel().intValue() < overflowLevel) {
+                    dropped++;
+                    return;
+                } else {
+                    notFull.awaitUninterruptibly();
+                }
+            }
+            if (closed) {
+                return;
+            }
+            ring[(int) (tail++ % ring.length)] = record;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the records queued so far are published and flush the targets.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long until = tail;
+            while (published < until && writer.isAlive()) {
+                notEmpty.signal();
+                try {
+                    drained.await(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    /**
+     * Publish the queued records, stop the writer and close the targets.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(exitFlush);
+        } catch (IllegalStateException e) {
+            // exiting, the hook flushes too
+        }
+
+        boolean interrupted = false;
+        while (writer.isAlive() && writer != Thread.currentThread()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    /**
+     * @return the records dropped by a full buffer
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the records waiting in the buffer
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    private void write() {
+        LogRecord[] batch = new LogRecord[Math.min(BATCH_SIZE, ring.length)];
+        while (true) {
+            int size = 0;
+            long drops;
+            boolean idle;
+            boolean last;
+            lock.lock();
+            try {
+                while (head == tail && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                while (size < batch.length && head < tail) {
+                    int slot = (int) (head++ % ring.length);
+                    batch[size++] = ring[slot];
+                    ring[slot] = null;
+                }
+                notFull.signalAll();
+                drops = dropped - droppedReported;
+                droppedReported = dropped;
+                idle = head == tail;
+                last = closed && idle;
+            } finally {
+                lock.unlock();
+            }
+
+            if (drops > 0) {
+                LogRecord warning = new LogRecord(Level.WARNING, "Asynchronous log buffer of " + ring.length
+                        + " records overflowed, " + drops + " records dropped");
+                warning.setLoggerName(AsyncHandler.class.getName());
+                warning.setSourceClassName(AsyncHandler.class.getName());
+                warning.setSourceMethodName("write");
+                publishToTargets(warning);
+            }
+            for (int i = 0; i < size; i++) {
+                publishToTargets(batch[i]);
+                batch[i] = null;
+            }
+            if (idle) {
+                // once per batch, or per burst of batches
+                for (Handler target : targets) {
+                    target.flush();
+                }
+            }
+
+            lock.lock();
+            try {
+                published = Math.max(published, head);
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private void publishToTargets(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private static String property(String name) {
+        String value = LogManager.getLogManager().getProperty(AsyncHandler.class.getName() + name);
+        return value == null || value.trim().length() == 0 ? null : value.trim();
+    }
+
+    private static Handler[] configuredTargets() {
+        String names = property(".target");
+        List<Handler> targets = new ArrayList<Handler>();
+        for (String name : (names == null ? "java.util.logging.ConsoleHandler" : names).split(",")) {
+            if (name.trim().length() == 0) {
+                continue;
+            }
+            try {
+                Class<?> type = ClassLoader.getSystemClassLoader().loadClass(name.trim());
+                targets.add((Handler) type.getDeclaredConstructor().newInstance());
+            } catch (Exception e) {
+                new ErrorManager().error("Can't create target handler " + name, e, ErrorManager.OPEN_FAILURE);
+            }
+        }
+        return targets.toArray(new Handler[targets.size()]);
+    }
+
+    private static int configuredCapacity() {
+        String capacity = property(".capacity");
+        try {
+            return capacity == null ? DEFAULT_CAPACITY : Integer.parseInt(capacity);
+        } catch (NumberFormatException e) {
+            return DEFAULT_CAPACITY;
+        }
+    }
+
+    private static Overflow configuredOverflow() {
+        String overflow = property(".overflow");
+        try {
+            return overflow == null ? Overflow.BLOCK : Overflow.parse(overflow);
+        } catch (IllegalArgumentException e) {
+            return Overflow.BLOCK;
+        }
+    }
+
+    private static Level configuredLevel(String name, Level defaultLevel) {
+        String level = property(name);
+        try {
+            return level == null ? defaultLevel : Level.parse(level);
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+}
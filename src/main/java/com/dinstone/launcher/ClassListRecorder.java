@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the classes defined by the {@link ApplicationClassLoader} during a training run and writes them, in load
+ * order, to a class list file that {@link ClassPreloader} replays on the next start.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ClassListRecorder {
+
+    private static final Logger LOG = Logger.getLogger(ClassListRecorder.class.getName());
+
+    private final File file;
+
+    private final long durationMillis;
+
+    private final Queue<String> classes = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private volatile boolean recording;
+
+    private volatile Thread timer;
+
+    public ClassListRecorder(File file, long durationMillis) {
+        this.file = file;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Start recording, the class list is written when the duration has elapsed or on {@link #finish()}.
+     */
+    public void start() {
+        recording = true;
+
+        Thread thread = new Thread("classlist-recorder") {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(durationMillis);
+                } catch (InterruptedException e) {
+                    // finish now
+                }
+                finish();
+            }
+        };
+        thread.setDaemon(true);
+        // don't pin the application class loader that is being recorded
+        thread.setContextClassLoader(ClassListRecorder.class.getClassLoader());
+        timer = thread;
+        thread.start();
+
+        LOG.log(Level.INFO, "Recording loaded classes for {0} ms to {1}", new Object[] { durationMillis, file });
+    }
+
+    public void record(String className) {
+        if (recording) {
+            classes.add(className);
+        }
+    }
+
+    /**
+     * Stop recording and write the class list, only the first call has effect.
+     */
+    public void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        recording = false;
+        Thread thread = timer;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+        }
+
+        List<String> names = new ArrayList<String>(classes);
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write("# recorded " + new Date() + ", " + names.size() + " classes\n");
+                for (String name : names) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            LOG.log(Level.INFO, "Recorded {0} classes to {1}", new Object[] { names.size(), file });
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't write class list " + file, e);
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the application class loaders with phantom references and verifies that a released class loader is
+ * reclaimed. A class loader that is not reclaimed in time is reported with the likely culprits: the live threads and
+ * shutdown hooks that reference it by their context class loader or their class.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ClassLoaderTracker {
+
+    private static final Logger LOG = Logger.getLogger(ClassLoaderTracker.class.getName());
+
+    public static final String STATE_LIVE = "live";
+
+    public static final String STATE_RELEASED = "released";
+
+    public static final String STATE_RECLAIMED = "reclaimed";
+
+    public static final String STATE_LEAKED = "leaked";
+
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+
+    private final List<Tracked> tracked = Collections.synchronizedList(new ArrayList<Tracked>());
+
+    private final long checkMillis;
+
+    /**
+     * @param checkMillis
+     *            the milliseconds a released class loader has to be reclaimed
+     */
+    public ClassLoaderTracker(long checkMillis) {
+        this.checkMillis = checkMillis;
+    }
+
+    public void track(ClassLoader classLoader, String name) {
+        tracked.add(new Tracked(classLoader, name, queue));
+    }
+
+    /**
+     * Mark the class loader released, it should be reclaimed once the caller drops its references.
+     *
+     * @return the tracked class loader to {@link #verify(Tracked)}, or null if it's not tracked
+     */
+    public Tracked release(ClassLoader classLoader) {
+        synchronized (tracked) {
+            for (Tracked t : tracked) {
+                if (STATE_LIVE.equals(t.state) && t.weak.get() == classLoader) {
+                    t.state = STATE_RELEASED;
+                    t.releaseMetaspace = metaspaceUsed();
+                    t.releaseUnloaded = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+                    return t;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collect the garbage until the class loader is reclaimed or the check time is elapsed, and log the outcome.
+     *
+     * @return true if the class loader was reclaimed
+     */
+    public boolean verify(Tracked t) {
+        long begin = System.currentTimeMillis();
+        long deadline = begin + checkMillis;
+        long lastGc = 0;
+        try {
+            while (!STATE_RECLAIMED.equals(t.state)) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    break;
+                }
+                if (now - lastGc >= 1000) {
+                    // class loaders are only unloaded by a collection of the old generation
+                    System.gc();
+                    lastGc = now;
+                }
+                Reference<? extends ClassLoader> reference = queue.remove(Math.min(100, deadline - now));
+                if (reference != null) {
+                    ((Tracked) reference).state = STATE_RECLAIMED;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long unloaded = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount() - t.releaseUnloaded;
+        if (STATE_RECLAIMED.equals(t.state)) {
+            LOG.log(Level.INFO,
+                "Class loader {0} reclaimed in {1} ms, metaspace {2} -> {3} bytes, {4} classes unloaded",
+                new Object[] { t.name, System.currentTimeMillis() - begin, String.valueOf(t.releaseMetaspace),
+                        String.valueOf(metaspaceUsed()), unloaded });
+            return true;
+        }
+
+        t.state = STATE_LEAKED;
+        List<String> culprits = findCulprits(t.weak.get());
+        Object suspects = culprits.isEmpty() ? "unknown (thread locals, static registries or caches)" : culprits;
+        LOG.log(Level.WARNING,
+            "Class loader {0} not reclaimed in {1} ms, metaspace {2} -> {3} bytes, likely culprits {4}",
+            new Object[] { t.name, String.valueOf(checkMillis), String.valueOf(t.releaseMetaspace),
+                    String.valueOf(metaspaceUsed()), suspects });
+        return false;
+    }
+
+    /**
+     * @return the tracked class loaders and their states in <code>key=value</code> lines
+     */
+    public String report() {
+        // drain the loaders reclaimed since the last check
+        Reference<? extends ClassLoader> reference;
+        while ((reference = queue.poll()) != null) {
+            ((Tracked) reference).state = STATE_RECLAIMED;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        synchronized (tracked) {
+            for (Tracked t : tracked) {
+                sb.append("classloader.").append(t.name).append('=').append(t.state).append('\n');
+            }
+        }
+        sb.append("metaspace.used=").append(metaspaceUsed()).append('\n');
+        sb.append("class.unloaded=").append(ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount())
+            .append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * @return the threads and shutdown hooks referencing the class loader
+     */
+    static List<String> findCulprits(ClassLoader classLoader) {
+        List<String> culprits = new ArrayList<String>();
+        if (classLoader == null) {
+            return culprits;
+        }
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            String reference = reference(thread, classLoader);
+            if (reference != null) {
+                culprits.add("thread '" + thread.getName() + "' (" + reference + ")");
+            }
+        }
+
+        Collection<Thread> hooks = shutdownHooks();
+        if (hooks == null) {
+            culprits.add("shutdown hooks not inspected, open them with --add-opens java.base/java.lang=ALL-UNNAMED");
+        } else {
+            for (Thread hook : hooks) {
+                String reference = reference(hook, classLoader);
+                if (reference != null) {
+                    culprits.add("shutdown hook '" + hook.getName() + "' (" + reference + ")");
+                }
+            }
+        }
+        return culprits;
+    }
+
+    private static String reference(Thread thread, ClassLoader classLoader) {
+        if (thread.getContextClassLoader() == classLoader) {
+            return "context class loader";
+        }
+        for (Class<?> c = thread.getClass(); c != null; c = c.getSuperclass()) {
+            if (c.getClassLoader() == classLoader) {
+                return "class " + c.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the registered shutdown hooks, or null if they can't be accessed
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Thread> shutdownHooks() {
+        try {
+            Class<?> hooksClass = Class.forName("java.lang.ApplicationShutdownHooks");
+            Field field = hooksClass.getDeclaredField("hooks");
+            field.setAccessible(true);
+            synchronized (hooksClass) {
+                Map<Thread, Thread> hooks = (Map<Thread, Thread>) field.get(null);
+                return hooks == null ? Collections.<Thread> emptyList() : new ArrayList<Thread>(hooks.keySet());
+            }
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A tracked class loader; the weak reference finds the culprits while it's not reclaimed.
+     */
+    public static class Tracked extends PhantomReference<ClassLoader> {
+
+        final String name;
+
+        final WeakReference<ClassLoader> weak;
+
+        volatile String state = STATE_LIVE;
+
+        long releaseMetaspace;
+
+        long releaseUnloaded;
+
+        Tracked(ClassLoader classLoader, String name, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.name = name;
+            this.weak = new WeakReference<ClassLoader>(classLoader);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getState() {
+            return state;
+        }
+    }
+
+}
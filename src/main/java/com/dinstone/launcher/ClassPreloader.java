@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the classes of a recorded class list on a bounded number of threads. The classes are loaded, not
+ * initialized, so replaying has no application side effects.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ClassPreloader {
+
+    private static final Logger LOG = Logger.getLogger(ClassPreloader.class.getName());
+
+    private final File file;
+
+    private final ClassLoader classLoader;
+
+    private final int threads;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private CountDownLatch done;
+
+    private volatile boolean stopped;
+
+    public ClassPreloader(File file, ClassLoader classLoader, int threads) {
+        this.file = file;
+        this.classLoader = classLoader;
+        this.threads = threads;
+    }
+
+    /**
+     * Start loading the class list in the background.
+     *
+     * @return false if there is no class list to replay
+     */
+    public boolean start() {
+        final List<String> names;
+        try {
+            names = readClassList();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't read class list " + file, e);
+            return false;
+        }
+        if (names == null || names.isEmpty()) {
+            LOG.log(Level.INFO, "No class list to replay at {0}", file);
+            return false;
+        }
+
+        final long begin = System.nanoTime();
+        final int workers = Math.max(1, Math.min(threads, names.size()));
+        done = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread("class-preload-" + (i + 1)) {
+
+                @Override
+                public void run() {
+                    try {
+                        preload(names);
+                    } finally {
+                        done.countDown();
+                        if (done.getCount() == 0) {
+                            long millis = (System.nanoTime() - begin) / 1000000;
+                            LOG.log(Level.INFO, "Preloaded {0} classes in {1} ms, {2} failed",
+                                new Object[] { loaded.get(), millis, failed.get() });
+                        }
+                    }
+                }
+            };
+            worker.setDaemon(true);
+            worker.setContextClassLoader(ClassPreloader.class.getClassLoader());
+            worker.start();
+        }
+        return true;
+    }
+
+    /**
+     * Wait for the preloading started by {@link #start()} to complete.
+     */
+    public void await() throws InterruptedException {
+        if (done != null) {
+            done.await();
+        }
+    }
+
+    /**
+     * Stop loading the remaining classes, the workers end after the class they are loading.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public int getLoadedCount() {
+        return loaded.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    private void preload(List<String> names) {
+        // workers share the cursor, so the classes load roughly in the recorded order
+        for (int i = cursor.getAndIncrement(); i < names.size() && !stopped; i = cursor.getAndIncrement()) {
+            try {
+                Class.forName(names.get(i), false, classLoader);
+                loaded.incrementAndGet();
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                LOG.log(Level.FINE, "Can't preload class " + names.get(i), t);
+            }
+        }
+    }
+
+    private List<String> readClassList() throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        List<String> names = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    names.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return names;
+    }
+
+}
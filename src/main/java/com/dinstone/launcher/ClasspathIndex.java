@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Maps package and resource names to the class path jars that contain them. Classes are indexed by their package
+ * directory, other resources by their full name, so a lookup returns the few jars worth opening and a miss returns
+ * none.
+ * <p>
+ * The index is persisted in a binary file together with the size and modification time of every jar, and is only
+ * valid for exactly the same jars.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ClasspathIndex {
+
+    private static final int MAGIC = 0x4A42504C;
+
+    private static final int VERSION = 1;
+
+    private static final int[] NONE = new int[0];
+
+    private static final String VERSIONS_DIR = "META-INF/versions/";
+
+    private final List<File> jars;
+
+    private final long[] sizes;
+
+    private final long[] modifies;
+
+    private final Map<String, int[]> entries;
+
+    private ClasspathIndex(List<File> jars, long[] sizes, long[] modifies, Map<String, int[]> entries) {
+        this.jars = jars;
+        this.sizes = sizes;
+        this.modifies = modifies;
+        this.entries = entries;
+    }
+
+    /**
+     * Build the index by reading the central directory of every jar.
+     *
+     * @throws IOException
+     *             if a jar can't be read
+     */
+    public static ClasspathIndex build(List<File> jars) throws IOException {
+        List<File> files = new ArrayList<File>(jars);
+        long[] sizes = new long[files.size()];
+        long[] modifies = new long[files.size()];
+        Map<String, int[]> entries = new HashMap<String, int[]>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            sizes[i] = file.length();
+            modifies[i] = file.lastModified();
+            JarFile jar = new JarFile(file, false);
+            try {
+                for (String key : readKeys(jar)) {
+                    add(entries, key, i);
+                }
+            } finally {
+                jar.close();
+            }
+        }
+        return new ClasspathIndex(files, sizes, modifies, entries);
+    }
+
+    /**
+     * Build the index from jar files that are already open; they are left open.
+     */
+    public static ClasspathIndex build(List<File> files, List<JarFile> jars) {
+        long[] sizes = new long[files.size()];
+        long[] modifies = new long[files.size()];
+        Map<String, int[]> entries = new HashMap<String, int[]>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            sizes[i] = file.length();
+            modifies[i] = file.lastModified();
+            for (String key : readKeys(jars.get(i))) {
+                add(entries, key, i);
+            }
+        }
+        return new ClasspathIndex(new ArrayList<File>(files), sizes, modifies, entries);
+    }
+
+    /**
+     * Load a persisted index.
+     *
+     * @return the index, or null if the file doesn't exist or doesn't match the given jars
+     * @throws IOException
+     *             if the file can't be read
+     */
+    public static ClasspathIndex load(File indexFile, List<File> jars) throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            int count = in.readInt();
+            if (count != jars.size()) {
+                return null;
+            }
+
+            List<File> files = new ArrayList<File>(jars);
+            long[] sizes = new long[count];
+            long[] modifies = new long[count];
+            Map<String, int[]> entries = new HashMap<String, int[]>();
+            for (int i = 0; i < count; i++) {
+                File file = files.get(i);
+                String path = in.readUTF();
+                sizes[i] = in.readLong();
+                modifies[i] = in.readLong();
+                if (!path.equals(file.getAbsolutePath()) || sizes[i] != file.length()
+                        || modifies[i] != file.lastModified()) {
+                    return null;
+                }
+
+                int keys = in.readInt();
+                for (int k = 0; k < keys; k++) {
+                    add(entries, in.readUTF(), i);
+                }
+            }
+            return new ClasspathIndex(files, sizes, modifies, entries);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Persist the index, replacing the file atomically where the file system allows it.
+     *
+     * @throws IOException
+     */
+    public void store(File indexFile) throws IOException {
+        List<Set<String>> keys = new ArrayList<Set<String>>(jars.size());
+        for (int i = 0; i < jars.size(); i++) {
+            keys.add(new LinkedHashSet<String>());
+        }
+        for (Map.Entry<String, int[]> entry : entries.entrySet()) {
+            for (int i : entry.getValue()) {
+                keys.get(i).add(entry.getKey());
+            }
+        }
+
+        File temp = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(jars.size());
+            for (int i = 0; i < jars.size(); i++) {
+                out.writeUTF(jars.get(i).getAbsolutePath());
+                out.writeLong(sizes[i]);
+                out.writeLong(modifies[i]);
+                out.writeInt(keys.get(i).size());
+                for (String key : keys.get(i)) {
+                    out.writeUTF(key);
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!temp.renameTo(indexFile)) {
+                temp.delete();
+                throw new IOException("can't replace index file " + indexFile);
+            }
+        }
+    }
+
+    /**
+     * Return the positions of the jars that may contain the named class file or resource.
+     */
+    public int[] lookup(String name) {
+        int[] candidates = entries.get(keyOf(name));
+        return candidates == null ? NONE : candidates;
+    }
+
+    public List<File> getJars() {
+        return Collections.unmodifiableList(jars);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    static String keyOf(String name) {
+        if (name.endsWith(".class")) {
+            int slash = name.lastIndexOf('/');
+            return slash < 0 ? "" : name.substring(0, slash);
+        }
+
+        if (name.endsWith("/")) {
+            return name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static Set<String> readKeys(JarFile jar) {
+        Set<String> keys = new LinkedHashSet<String>();
+        Enumeration<JarEntry> e = jar.entries();
+        while (e.hasMoreElements()) {
+            String name = e.nextElement().getName();
+            keys.add(keyOf(name));
+
+            // multi-release jar entries are also reachable by their unversioned name
+            if (name.startsWith(VERSIONS_DIR)) {
+                int slash = name.indexOf('/', VERSIONS_DIR.length());
+                if (slash > 0 && slash < name.length() - 1) {
+                    keys.add(keyOf(name.substring(slash + 1)));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static void add(Map<String, int[]> entries, String key, int jar) {
+        int[] jars = entries.get(key);
+        if (jars == null) {
+            entries.put(key, new int[] { jar });
+        } else if (jars[jars.length - 1] != jar) {
+            int[] grown = new int[jars.length + 1];
+            System.arraycopy(jars, 0, grown, 0, jars.length);
+            grown[jars.length] = jar;
+            entries.put(key, grown);
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the class path tokens and opens the jar files on a worker pool, keeping the class path order.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ClasspathScanner {
+
+    private static final Logger LOG = Logger.getLogger(ClasspathScanner.class.getName());
+
+    private static final String GLOB_JAR = "*.jar";
+
+    private final ExecutorService executor;
+
+    public ClasspathScanner(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Resolve the comma separated class path. A token is a URL, a directory, a jar file or a directory followed by
+     * <code>*.jar</code>; the jars matched by a glob are ordered by name. Missing locations are skipped.
+     */
+    public List<Location> resolve(final String applicationHome, String classPath) throws IOException {
+        List<Future<List<Location>>> futures = new ArrayList<Future<List<Location>>>();
+        for (String token : classPath.split(",")) {
+            final String path = token.startsWith(LifecycleManager.APPLICATION_HOME_TOKEN)
+                    ? applicationHome + token.substring(LifecycleManager.APPLICATION_HOME_TOKEN.length()) : token;
+            futures.add(executor.submit(new Callable<List<Location>>() {
+
+                @Override
+                public List<Location> call() throws Exception {
+                    return resolveToken(path);
+                }
+            }));
+        }
+
+        Set<Location> locations = new LinkedHashSet<Location>();
+        for (Future<List<Location>> future : futures) {
+            locations.addAll(get(future));
+        }
+        return new ArrayList<Location>(locations);
+    }
+
+    /**
+     * Open and validate the jar files in parallel.
+     *
+     * @return the open jar files, in the given order
+     * @throws IllegalStateException
+     *             if a jar file is unreadable or corrupt
+     */
+    public List<JarFile> open(List<File> jars) throws IOException {
+        CompletionService<JarFile> service = new ExecutorCompletionService<JarFile>(executor);
+        Map<Future<JarFile>, Integer> positions = new HashMap<Future<JarFile>, Integer>();
+        for (int i = 0; i < jars.size(); i++) {
+            final File jar = jars.get(i);
+            positions.put(service.submit(new Callable<JarFile>() {
+
+                @Override
+                public JarFile call() throws Exception {
+                    return ApplicationClassLoader.openJar(jar);
+                }
+            }), i);
+        }
+
+        JarFile[] opened = new JarFile[jars.size()];
+        boolean done = false;
+        try {
+            for (int n = 0; n < jars.size(); n++) {
+                Future<JarFile> future = service.take();
+                int i = positions.get(future);
+                try {
+                    opened[i] = future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Invalid jar file " + jars.get(i) + ": " + e.getCause(),
+                        e.getCause());
+                }
+            }
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening jar files", e);
+        } finally {
+            if (!done) {
+                close(positions.keySet());
+            }
+        }
+
+        List<JarFile> result = new ArrayList<JarFile>(opened.length);
+        Collections.addAll(result, opened);
+        return result;
+    }
+
+    private List<Location> resolveToken(String token) throws IOException {
+        try {
+            return Collections.singletonList(new Location(new URL(token), null));
+        } catch (Exception e) {
+        }
+
+        if (token.endsWith(GLOB_JAR)) {
+            Path directory = Paths.get(token.substring(0, token.length() - GLOB_JAR.length()));
+            if (!Files.isDirectory(directory) || !Files.isReadable(directory)) {
+                return Collections.emptyList();
+            }
+
+            List<Path> paths = new ArrayList<Path>();
+            DirectoryStream<Path> stream = Files.newDirectoryStream(directory, new DirectoryStream.Filter<Path>() {
+
+                @Override
+                public boolean accept(Path entry) {
+                    return entry.getFileName().toString().toLowerCase().endsWith(".jar");
+                }
+            });
+            try {
+                for (Path path : stream) {
+                    paths.add(path);
+                }
+            } finally {
+                stream.close();
+            }
+            Collections.sort(paths);
+
+            List<Location> locations = new ArrayList<Location>(paths.size());
+            for (Path path : paths) {
+                File file = path.toAbsolutePath().toFile();
+                LOG.log(Level.CONFIG, "Including glob jar file [{0}]", file);
+                locations.add(new Location(file.toURI().toURL(), file));
+            }
+            return locations;
+        } else if (token.endsWith(".jar")) {
+            Path path = Paths.get(token);
+            if (!Files.isRegularFile(path)) {
+                return Collections.emptyList();
+            }
+
+            File file = path.toAbsolutePath().toFile();
+            LOG.log(Level.CONFIG, "Including jar file [{0}]", file);
+            return Collections.singletonList(new Location(file.toURI().toURL(), file));
+        } else {
+            Path directory = Paths.get(token);
+            if (!Files.isDirectory(directory) || !Files.isReadable(directory)) {
+                return Collections.emptyList();
+            }
+
+            File file = directory.toAbsolutePath().toFile();
+            LOG.log(Level.CONFIG, "Including directory {0}", file);
+            return Collections.singletonList(new Location(file.toURI().toURL(), null));
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving class path", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Can't resolve class path", e.getCause());
+        }
+    }
+
+    /**
+     * Cancel the pending opens and close the jar files that were already opened.
+     */
+    private static void close(Iterable<Future<JarFile>> futures) {
+        for (Future<JarFile> future : futures) {
+            future.cancel(true);
+        }
+        for (Future<JarFile> future : futures) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    future.get().close();
+                } catch (Exception e) {
+                    // failed to open or to close
+                }
+            }
+        }
+    }
+
+    /**
+     * A resolved class path location.
+     */
+    public static class Location {
+
+        private final URL url;
+
+        private final File jar;
+
+        Location(URL url, File jar) {
+            this.url = url;
+            this.jar = jar;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the local jar file, or null if the location is a directory or a URL
+         */
+        public File getJar() {
+            return jar;
+        }
+
+        @Override
+        public int hashCode() {
+            return url.toString().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Location && url.toString().equals(((Location) obj).url.toString());
+        }
+
+    }
+
+}
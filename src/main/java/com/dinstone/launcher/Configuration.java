@@ -21,6 +21,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Map;
 import java.util.Properties;
 
 public class Configuration {
@@ -29,12 +30,50 @@ public class Configuration {
 
     private static final String APPLICATION_HOME = "application.home";
 
+    private static final String APPLICATION_PREFIX = "application.";
+
     private Properties properties = new Properties();
 
     public Configuration() {
         loadConfig();
     }
 
+    private Configuration(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Create the configuration of an application hosted by the launcher. The <code>application.*</code> properties
+     * are the ones prefixed with <code>apps.&lt;name&gt;.</code>, the other properties default to the launcher ones.
+     * The application home defaults to <code>${launcher.home}/apps/&lt;name&gt;</code>.
+     */
+    public Configuration forApplication(String name) {
+        String prefix = "apps." + name + ".";
+        Properties application = new Properties();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = (String) entry.getKey();
+            if (!key.startsWith(APPLICATION_PREFIX) && !key.startsWith("apps.")) {
+                application.put(key, entry.getValue());
+            }
+        }
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = (String) entry.getKey();
+            if (key.startsWith(prefix)) {
+                application.put(key.substring(prefix.length()), entry.getValue());
+            }
+        }
+
+        String launcherHome = getLauncherHome();
+        String home = application.getProperty(APPLICATION_HOME);
+        if (home == null || home.length() == 0) {
+            home = new File(new File(launcherHome, "apps"), name).getPath();
+        } else if (home.startsWith(LifecycleManager.LAUNCHER_HOME_TOKEN)) {
+            home = launcherHome + home.substring(LifecycleManager.LAUNCHER_HOME_TOKEN.length());
+        }
+        application.setProperty(APPLICATION_HOME, home);
+        return new Configuration(application);
+    }
+
     private void loadConfig() {
         // first find launcher file from system property
         InputStream is = null;
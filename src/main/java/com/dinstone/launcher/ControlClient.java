@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Client of the {@link ControlServer}, over TCP or a Unix domain socket.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ControlClient {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final SocketAddress address;
+
+    private final long timeout;
+
+    /**
+     * @param timeout
+     *            the milliseconds to wait for the reply, 0 to wait until it arrives
+     */
+    public ControlClient(SocketAddress address, long timeout) {
+        this.address = address;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Send the command terminated by a new line and read the length-prefixed reply.
+     */
+    public String request(String command) throws IOException {
+        byte[] reply = exchange((command + "\n").getBytes(UTF8));
+        if (reply.length < 4) {
+            throw new IOException("Truncated reply to " + command);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(reply);
+        int length = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new IOException("Truncated reply to " + command);
+        }
+        return new String(reply, 4, length, UTF8);
+    }
+
+    /**
+     * Send the bare command, as earlier launchers expect it, and read the raw reply.
+     */
+    public String requestRaw(String command) throws IOException {
+        return new String(exchange(command.getBytes(UTF8)), UTF8);
+    }
+
+    /**
+     * Write the request and read until the server closes the connection.
+     */
+    private byte[] exchange(byte[] request) throws IOException {
+        SocketChannel channel = UnixSockets.isUnixAddress(address) ? UnixSockets.connect(address)
+                : SocketChannel.open(address);
+        Selector selector = null;
+        try {
+            ByteBuffer out = ByteBuffer.wrap(request);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+
+            selector = Selector.open();
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer in = ByteBuffer.allocate(8192);
+            long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("No reply from " + address + " in " + timeout + " ms");
+                }
+                selector.select(timeout > 0 ? remaining : 0);
+                selector.selectedKeys().clear();
+
+                int n = channel.read(in);
+                if (n < 0) {
+                    return reply.toByteArray();
+                }
+                reply.write(in.array(), 0, in.position());
+                in.clear();
+            }
+        } finally {
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.MonitorInfo;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Date;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * The diagnostic commands of the control listener. Apart from the thread dump the replies are
+ * <code>key=value</code> lines.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ControlCommands {
+
+    public static final String STATUS = "STATUS";
+
+    public static final String METRICS = "METRICS";
+
+    public static final String THREADDUMP = "THREADDUMP";
+
+    public static final String GC_STATS = "GC-STATS";
+
+    public static final String STARTUP = "STARTUP";
+
+    public static final String REDEPLOY = "REDEPLOY";
+
+    public static final String CLASSLOADERS = "CLASSLOADERS";
+
+    public static final String APPS = "APPS";
+
+    /** <code>START &lt;application&gt;</code> */
+    public static final String START = "START";
+
+    /** <code>STOP &lt;application&gt;</code> */
+    public static final String STOP = "STOP";
+
+    public static final String WORKERS = "WORKERS";
+
+    public static final String ROLLING_RESTART = "ROLLING-RESTART";
+
+    public static final String JFR_DUMP = "JFR-DUMP";
+
+    public static final String PAUSES = "PAUSES";
+
+    private static final String MESSAGE_NOT_HOSTING = "NOT_HOSTING";
+
+    private static final String MESSAGE_NOT_SUPERVISING = "NOT_SUPERVISING";
+
+    private static final String MESSAGE_NOT_RECORDING = "NOT_RECORDING";
+
+    private static final String MESSAGE_NOT_MONITORING = "NOT_MONITORING";
+
+    private final LifecycleManager lifecycle;
+
+    public ControlCommands(LifecycleManager lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * @return the reply, or null if the command is unknown
+     */
+    public String handle(String command) {
+        if (STATUS.equals(command)) {
+            return status();
+        } else if (METRICS.equals(command)) {
+            return metrics();
+        } else if (THREADDUMP.equals(command)) {
+            return threadDump();
+        } else if (GC_STATS.equals(command)) {
+            return gcStats();
+        } else if (STARTUP.equals(command)) {
+            return lifecycle.getStartupReport().toProperties();
+        } else if (REDEPLOY.equals(command)) {
+            return lifecycle.redeploy();
+        } else if (CLASSLOADERS.equals(command)) {
+            return lifecycle.getClassLoaderTracker().report();
+        } else if (APPS.equals(command)) {
+            ApplicationHost host = lifecycle.getApplicationHost();
+            return host == null ? MESSAGE_NOT_HOSTING : host.report();
+        } else if (WORKERS.equals(command)) {
+            WorkerSupervisor supervisor = lifecycle.getWorkerSupervisor();
+            return supervisor == null ? MESSAGE_NOT_SUPERVISING : supervisor.report();
+        } else if (ROLLING_RESTART.equals(command)) {
+            WorkerSupervisor supervisor = lifecycle.getWorkerSupervisor();
+            return supervisor == null ? MESSAGE_NOT_SUPERVISING : supervisor.rollingRestart();
+        } else if (PAUSES.equals(command)) {
+            PauseMonitor monitor = lifecycle.getPauseMonitor();
+            return monitor == null ? MESSAGE_NOT_MONITORING : monitor.report();
+        } else if (JFR_DUMP.equals(command)) {
+            File dump = lifecycle.dumpFlightRecording("command");
+            if (dump == null) {
+                return MESSAGE_NOT_RECORDING;
+            }
+            StringBuilder sb = new StringBuilder();
+            line(sb, "jfr.dump", dump.getAbsolutePath());
+            return sb.toString();
+        }
+
+        // the commands on a hosted application
+        int space = command.indexOf(' ');
+        if (space < 0) {
+            return null;
+        }
+        String name = command.substring(0, space);
+        String application = command.substring(space + 1).trim();
+        if (!START.equals(name) && !STOP.equals(name) && !REDEPLOY.equals(name)) {
+            return null;
+        }
+
+        ApplicationHost host = lifecycle.getApplicationHost();
+        if (host == null) {
+            return MESSAGE_NOT_HOSTING;
+        } else if (START.equals(name)) {
+            return host.start(application);
+        } else if (STOP.equals(name)) {
+            return host.stop(application);
+        }
+        LifecycleManager hosted = host.get(application);
+        return hosted == null ? ApplicationHost.MESSAGE_NOT_RUNNING : hosted.redeploy();
+    }
+
+    public String status() {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        StartupReport report = lifecycle.getStartupReport();
+
+        StringBuilder sb = new StringBuilder();
+        line(sb, "state", lifecycle.getState());
+        line(sb, "ready", lifecycle.isReady());
+        line(sb, "generation", lifecycle.getGeneration());
+        line(sb, "activator", lifecycle.getActivatorClassName());
+        line(sb, "jvm.name", runtime.getName());
+        line(sb, "start.time", report.getStartTime());
+        line(sb, "uptime.ms", runtime.getUptime());
+        line(sb, "startup.ms", report.getTotalNanos() < 0 ? -1 : report.getTotalNanos() / 1000000);
+        line(sb, "thread.count", ManagementFactory.getThreadMXBean().getThreadCount());
+        line(sb, "heap.used", heap.getUsed());
+        line(sb, "heap.max", heap.getMax());
+        return sb.toString();
+    }
+
+    public String metrics() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+
+        StringBuilder sb = new StringBuilder();
+        line(sb, "uptime.ms", ManagementFactory.getRuntimeMXBean().getUptime());
+        memory(sb, "heap", memory.getHeapMemoryUsage());
+        memory(sb, "nonheap", memory.getNonHeapMemoryUsage());
+        line(sb, "thread.count", threads.getThreadCount());
+        line(sb, "thread.daemon", threads.getDaemonThreadCount());
+        line(sb, "thread.peak", threads.getPeakThreadCount());
+        line(sb, "class.loaded", classes.getLoadedClassCount());
+        line(sb, "class.unloaded", classes.getUnloadedClassCount());
+
+        ClassLoader classLoader = lifecycle.getApplicationClassLoader();
+        if (classLoader instanceof ApplicationClassLoader) {
+            ApplicationClassLoader application = (ApplicationClassLoader) classLoader;
+            line(sb, "application.class.loaded", application.getLoadedClassCount());
+            line(sb, "application.class.miss", application.getLookupMissCount());
+            line(sb, "application.findclass.nanos", application.getFindClassNanos());
+        }
+
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        line(sb, "gc.count", count);
+        line(sb, "gc.time.ms", time);
+        line(sb, "system.load.average", ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+
+        LauncherExecutors executors = lifecycle.getExecutors();
+        if (executors != null) {
+            sb.append(executors.report());
+        }
+        MemoryPressureMonitor pressure = lifecycle.getMemoryPressureMonitor();
+        if (pressure != null) {
+            sb.append(pressure.report());
+        }
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            if (handler instanceof AsyncHandler) {
+                AsyncHandler async = (AsyncHandler) handler;
+                line(sb, "log.async.capacity", async.getCapacity());
+                line(sb, "log.async.queued", async.getQueuedCount());
+                line(sb, "log.async.dropped", async.getDroppedCount());
+            }
+        }
+        return sb.toString();
+    }
+
+    public String gcStats() {
+        StringBuilder sb = new StringBuilder();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = key(gc.getName());
+            line(sb, "gc." + name + ".count", gc.getCollectionCount());
+            line(sb, "gc." + name + ".time.ms", gc.getCollectionTime());
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            memory(sb, "pool." + key(pool.getName()), pool.getUsage());
+            MemoryUsage collection = pool.getCollectionUsage();
+            if (collection != null) {
+                line(sb, "pool." + key(pool.getName()) + ".collection.used", collection.getUsed());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Dump all threads with their full stacks, unlike {@link ThreadInfo#toString()} which is cut at 8 frames.
+     */
+    public static String threadDump() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos = threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(),
+            threads.isSynchronizerUsageSupported());
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Full thread dump ").append(new Date()).append('\n');
+        for (ThreadInfo info : infos) {
+            sb.append('\n').append('"').append(info.getThreadName()).append("\" id=").append(info.getThreadId())
+                .append(' ').append(info.getThreadState());
+            if (info.getLockName() != null) {
+                sb.append(" on ").append(info.getLockName());
+            }
+            if (info.getLockOwnerName() != null) {
+                sb.append(" owned by \"").append(info.getLockOwnerName()).append("\" id=")
+                    .append(info.getLockOwnerId());
+            }
+            sb.append('\n');
+
+            StackTraceElement[] stack = info.getStackTrace();
+            MonitorInfo[] monitors = info.getLockedMonitors();
+            for (int i = 0; i < stack.length; i++) {
+                sb.append("\tat ").append(stack[i]).append('\n');
+                for (MonitorInfo monitor : monitors) {
+                    if (monitor.getLockedStackDepth() == i) {
+                        sb.append("\t- locked ").append(monitor).append('\n');
+                    }
+                }
+            }
+
+            LockInfo[] synchronizers = info.getLockedSynchronizers();
+            if (synchronizers.length > 0) {
+                sb.append("\tLocked synchronizers:\n");
+                for (LockInfo synchronizer : synchronizers) {
+                    sb.append("\t- ").append(synchronizer).append('\n');
+                }
+            }
+        }
+
+        long[] deadlocked = threads.isSynchronizerUsageSupported() ? threads.findDeadlockedThreads() : null;
+        if (deadlocked != null) {
+            sb.append("\nDeadlocked threads:");
+            for (long id : deadlocked) {
+                sb.append(' ').append(id);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void memory(StringBuilder sb, String name, MemoryUsage usage) {
+        line(sb, name + ".used", usage.getUsed());
+        line(sb, name + ".committed", usage.getCommitted());
+        line(sb, name + ".max", usage.getMax());
+    }
+
+    private static void line(StringBuilder sb, String key, Object value) {
+        sb.append(key).append('=').append(value).append('\n');
+    }
+
+    /**
+     * Turn a collector or pool name such as "PS Old Gen" into a key such as "ps.old.gen".
+     */
+    static String key(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '.') {
+                sb.append('.');
+            }
+        }
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '.') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Selector driven control listener. Every connection carries one command, terminated by a control character (such
+ * as a new line) or by the end of the stream, and receives one reply. Commands are handled on a worker pool, the
+ * shutdown command on a thread of its own, so slow clients or slow commands never hold up the shutdown.
+ * <p>
+ * A command terminated by a control character is answered with a 4 byte big-endian length followed by the UTF-8
+ * reply; other commands, such as the bare shutdown command of earlier clients, with the raw ASCII reply.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ControlServer {
+
+    private static final Logger LOG = Logger.getLogger(ControlServer.class.getName());
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** the longest command accepted, cut off to avoid DoS attack */
+    private static final int MAX_COMMAND_LENGTH = 256;
+
+    private static final String MESSAGE_BUSY = "BUSY";
+
+    private static final String MESSAGE_STOPPING = "STOPPING";
+
+    /**
+     * Handles the control commands.
+     */
+    public interface Handler {
+
+        /**
+         * @return the reply
+         */
+        String handle(String command) throws Exception;
+    }
+
+    private final ServerSocketChannel serverChannel;
+
+    private final String shutdownCommand;
+
+    private final Handler handler;
+
+    private final long idleTimeout;
+
+    private final Selector selector;
+
+    private final ExecutorService executor;
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+
+    private volatile boolean aborted;
+
+    private boolean shutdownDispatched;
+
+    private boolean shutdownReplied;
+
+    /**
+     * @param serverChannel
+     *            the bound server channel, it's closed with the server
+     * @param threads
+     *            the number of threads handling the commands
+     * @param idleTimeout
+     *            the milliseconds a client may take to send its command or to read the reply
+     */
+    public ControlServer(ServerSocketChannel serverChannel, String shutdownCommand, Handler handler, int threads,
+            long idleTimeout) throws IOException {
+        this.serverChannel = serverChannel;
+        this.shutdownCommand = shutdownCommand;
+        this.handler = handler;
+        this.idleTimeout = idleTimeout;
+
+        this.selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(64), new NamedThreadFactory("lifecycle-control", true));
+    }
+
+    /**
+     * Serve the clients on the calling thread.
+     *
+     * @return true if the server was stopped by {@link #stop()}, false if it returned after the shutdown command
+     */
+    public boolean serve() {
+        try {
+            while (!aborted && !shutdownReplied) {
+                selector.select(500);
+
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        LOG.log(Level.FINE, "Control connection failure", e);
+                        close(key);
+                    }
+                }
+
+                expire();
+            }
+        } catch (ClosedSelectorException e) {
+            // stopped
+        } catch (IOException e) {
+            if (!aborted) {
+                LOG.log(Level.SEVERE, "Control listener failure", e);
+                throw new RuntimeException(e);
+            }
+        } finally {
+            close();
+        }
+        return aborted;
+    }
+
+    /**
+     * Stop serving and close the server channel; {@link #serve()} returns true.
+     */
+    public void stop() {
+        aborted = true;
+        close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        LOG.log(Level.FINE, "Have a control request at {0}", channel.getRemoteAddress());
+        channel.register(selector, SelectionKey.OP_READ, new Connection(System.currentTimeMillis() + idleTimeout));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+
+        int n = channel.read(connection.in);
+        String command = connection.command(n < 0, shutdownCommand);
+        if (command != null) {
+            dispatch(key, connection, command);
+        } else if (n < 0) {
+            close(key);
+        }
+    }
+
+    private void dispatch(final SelectionKey key, final Connection connection, final String command) {
+        key.interestOps(0);
+        connection.deadline = Long.MAX_VALUE;
+
+        final boolean shutdown = command.equals(shutdownCommand);
+        if (shutdown && shutdownDispatched) {
+            reply(key, connection, MESSAGE_STOPPING, false);
+            return;
+        }
+
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                String reply;
+                try {
+                    reply = handler.handle(command);
+                } catch (Throwable t) {
+                    LOG.log(Level.WARNING, "Control command '" + command + "' failure", t);
+                    reply = "ERROR " + t;
+                }
+
+                final String message = reply;
+                pending.add(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        reply(key, connection, message, shutdown);
+                    }
+                });
+                selector.wakeup();
+            }
+        };
+
+        if (shutdown) {
+            shutdownDispatched = true;
+            Thread thread = new Thread(task, "lifecycle-shutdown");
+            thread.setContextClassLoader(ControlServer.class.getClassLoader());
+            thread.start();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                reply(key, connection, MESSAGE_BUSY, false);
+            }
+        }
+    }
+
+    private void reply(SelectionKey key, Connection connection, String message, boolean shutdown) {
+        connection.shutdown = shutdown;
+        if (!key.isValid()) {
+            shutdownReplied |= shutdown;
+            return;
+        }
+
+        if (connection.framed) {
+            byte[] bytes = message.getBytes(UTF8);
+            connection.out = ByteBuffer.allocate(4 + bytes.length);
+            connection.out.putInt(bytes.length).put(bytes).flip();
+        } else {
+            connection.out = ByteBuffer.wrap(message.getBytes(ASCII));
+        }
+        connection.deadline = System.currentTimeMillis() + idleTimeout;
+        key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ((SocketChannel) key.channel()).write(connection.out);
+        if (!connection.out.hasRemaining()) {
+            close(key);
+        }
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection && ((Connection) attachment).deadline < now) {
+                LOG.log(Level.FINE, "Control connection timed out");
+                close(key);
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection && ((Connection) attachment).shutdown) {
+            shutdownReplied = true;
+        }
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void close() {
+        try {
+            if (selector.isOpen()) {
+                for (SelectionKey key : selector.keys()) {
+                    try {
+                        key.channel().close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+                selector.close();
+            }
+        } catch (ClosedSelectorException e) {
+            // closed concurrently
+        } catch (IOException e) {
+            // ignore
+        }
+
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        executor.shutdownNow();
+    }
+
+    private static class Connection {
+
+        final ByteBuffer in = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+
+        ByteBuffer out;
+
+        long deadline;
+
+        boolean shutdown;
+
+        boolean framed;
+
+        Connection(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return the complete command, or null if more input is expected
+         */
+        String command(boolean eof, String shutdownCommand) {
+            int end = -1;
+            for (int i = 0; i < in.position(); i++) {
+                if ((in.get(i) & 0xff) < 32) {
+                    end = i;
+                    framed = true;
+                    break;
+                }
+            }
+
+            if (end < 0) {
+                end = in.position();
+                // clients before the framing send the bare shutdown command and wait for the reply
+                boolean legacy = end == shutdownCommand.length()
+                        && new String(in.array(), 0, end, UTF8).equals(shutdownCommand);
+                if (!eof && !legacy && in.hasRemaining()) {
+                    return null;
+                }
+            }
+            return new String(in.array(), 0, end, UTF8);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * {@link LauncherContext} backed by the launcher {@link Configuration}.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class DefaultLauncherContext implements LauncherContext {
+
+    private final Configuration config;
+
+    private final ClassLoader applicationClassLoader;
+
+    private final LauncherExecutors executors;
+
+    public DefaultLauncherContext(Configuration config, ClassLoader applicationClassLoader) {
+        this(config, applicationClassLoader, null);
+    }
+
+    /**
+     * @param executors
+     *            the executors of the activators, null for none
+     */
+    public DefaultLauncherContext(Configuration config, ClassLoader applicationClassLoader,
+            LauncherExecutors executors) {
+        this.config = config;
+        this.applicationClassLoader = applicationClassLoader;
+        this.executors = executors;
+    }
+
+    @Override
+    public String getLauncherHome() {
+        return config.getLauncherHome();
+    }
+
+    @Override
+    public String getApplicationHome() {
+        return config.getApplicationHome();
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return config.getProperty(name);
+    }
+
+    @Override
+    public String getProperty(String name, String defaultValue) {
+        return config.getProperty(name, defaultValue);
+    }
+
+    @Override
+    public ClassLoader getApplicationClassLoader() {
+        return applicationClassLoader;
+    }
+
+    @Override
+    public ExecutorService getCpuExecutor() {
+        return executors().getCpuExecutor();
+    }
+
+    @Override
+    public ExecutorService getIoExecutor() {
+        return executors().getIoExecutor();
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutor() {
+        return executors().getScheduledExecutor();
+    }
+
+    @Override
+    public ExecutorService getVirtualThreadExecutor() {
+        return executors().getVirtualThreadExecutor();
+    }
+
+    private LauncherExecutors executors() {
+        if (executors == null) {
+            throw new IllegalStateException("the launcher provides no executors");
+        }
+        return executors;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The flight recorder events of the launcher and its continuous recording. The events and the recording are in
+ * {@link com.dinstone.launcher.jfr}, loaded only on a JVM with the flight recorder; elsewhere the events are dropped.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public final class FlightRecording {
+
+    private static final Logger LOG = Logger.getLogger(FlightRecording.class.getName());
+
+    /**
+     * The flight recorder behind the events and the recording.
+     */
+    public interface Backend {
+
+        Object begin(String phase, String application);
+
+        Object beginCommand(String command);
+
+        void end(Object event, String reply);
+
+        void start(String settings, long maxBytes, long maxAgeMillis) throws IOException;
+
+        boolean isRecording();
+
+        void dump(File file) throws IOException;
+
+        void stop();
+    }
+
+    private static final Backend BACKEND = loadBackend();
+
+    private FlightRecording() {
+    }
+
+    public static boolean isAvailable() {
+        return BACKEND != null;
+    }
+
+    /**
+     * Begin a phase event of the launcher.
+     *
+     * @return the event for {@link #end(Object)}, or null without the flight recorder
+     */
+    public static Object begin(String phase) {
+        return begin(phase, null);
+    }
+
+    /**
+     * @param application
+     *            the hosted application, null for the launcher
+     */
+    public static Object begin(String phase, String application) {
+        return BACKEND == null ? null : BACKEND.begin(phase, application);
+    }
+
+    public static void end(Object event) {
+        if (event != null) {
+            BACKEND.end(event, null);
+        }
+    }
+
+    public static Object beginCommand(String command) {
+        return BACKEND == null ? null : BACKEND.beginCommand(command);
+    }
+
+    public static void endCommand(Object event, String reply) {
+        if (event != null) {
+            BACKEND.end(event, reply);
+        }
+    }
+
+    /**
+     * Start the continuous recording, unless it's running.
+     *
+     * @param settings
+     *            the settings, <code>default</code> or <code>profile</code> or a .jfc file
+     * @return false if the recording can't be started
+     */
+    public static boolean start(String settings, long maxBytes, long maxAgeMillis) {
+        if (BACKEND == null) {
+            LOG.log(Level.WARNING, "The flight recorder is not available in this JVM, no recording");
+            return false;
+        }
+        if (BACKEND.isRecording()) {
+            return true;
+        }
+        try {
+            BACKEND.start(settings, maxBytes, maxAgeMillis);
+            LOG.log(Level.INFO, "Flight recording {0} is started, up to {1} MB and {2} minutes", new Object[] {
+                    settings, maxBytes / (1024 * 1024), maxAgeMillis / 60000 });
+            return true;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Can't start the flight recording", e);
+            return false;
+        }
+    }
+
+    public static boolean isRecording() {
+        return BACKEND != null && BACKEND.isRecording();
+    }
+
+    /**
+     * Dump the continuous recording to <code>flight-&lt;reason&gt;-&lt;time&gt;.jfr</code> in the directory.
+     *
+     * @return the dump, or null if there is no recording or it can't be dumped
+     */
+    public static File dump(File dir, String reason) {
+        if (!isRecording()) {
+            return null;
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        File file = new File(dir, "flight-" + reason + "-" + time + ".jfr");
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("can't create directory " + dir);
+            }
+            BACKEND.dump(file);
+            LOG.log(Level.INFO, "Flight recording dumped to {0}", file);
+            return file;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Can't dump the flight recording to " + file, e);
+            return null;
+        }
+    }
+
+    public static void stop() {
+        if (BACKEND != null) {
+            BACKEND.stop();
+        }
+    }
+
+    private static Backend loadBackend() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            Class<?> backend = Class.forName("com.dinstone.launcher.jfr.JfrBackend");
+            return (Backend) backend.getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            LOG.log(Level.FINE, "The flight recorder is not available", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP endpoint of the health and the metrics of the launcher: <code>/health/live</code> answers 503 once the
+ * activators failed, <code>/health/ready</code> 503 until they are started and warmed up and once the shutdown began,
+ * and <code>/metrics</code> the startup phases and the JVM metrics in the Prometheus text format. The requests are
+ * served by a few threads of their own; when they are all busy the dispatcher thread serves them, so scrapes never
+ * take a thread of the application.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class HealthServer {
+
+    private static final Logger LOG = Logger.getLogger(HealthServer.class.getName());
+
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final LifecycleManager lifecycle;
+
+    private final HttpServer server;
+
+    private final ThreadPoolExecutor executor;
+
+    public HealthServer(LifecycleManager lifecycle, InetSocketAddress address, int threads) throws IOException {
+        this.lifecycle = lifecycle;
+        this.server = HttpServer.create(address, 16);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(16), new NamedThreadFactory("launcher-http", true),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        server.setExecutor(executor);
+        server.createContext("/health/live", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean live = HealthServer.this.lifecycle.getState() != LifecycleState.FAILED;
+                reply(exchange, live ? 200 : 503, TEXT, status());
+            }
+        });
+        server.createContext("/health/ready", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                reply(exchange, HealthServer.this.lifecycle.isReady() ? 200 : 503, TEXT, status());
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                reply(exchange, 200, PROMETHEUS, metrics());
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        LOG.log(Level.INFO, "Health endpoint is listening on {0}", server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private String status() {
+        return "state=" + lifecycle.getState() + "\nready=" + lifecycle.isReady() + "\n";
+    }
+
+    /**
+     * @return the metrics in the Prometheus text format
+     */
+    public String metrics() {
+        StringBuilder sb = new StringBuilder();
+        StartupReport report = lifecycle.getStartupReport();
+        header(sb, "launcher_ready", "gauge", "1 if the activators are started and warmed up");
+        sample(sb, "launcher_ready", null, lifecycle.isReady() ? 1 : 0);
+        header(sb, "launcher_generation", "gauge", "the generation of the activators, incremented by a redeploy");
+        sample(sb, "launcher_generation", null, lifecycle.getGeneration());
+        header(sb, "launcher_uptime_seconds", "gauge", "the uptime of the JVM");
+        sample(sb, "launcher_uptime_seconds", null, ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        if (report.getTotalNanos() >= 0) {
+            header(sb, "launcher_startup_seconds", "gauge", "the startup time of the running generation");
+            sample(sb, "launcher_startup_seconds", null, report.getTotalNanos() / 1e9);
+        }
+        header(sb, "launcher_startup_phase_seconds", "gauge", "the time of each startup phase");
+        for (Map.Entry<String, Long> phase : report.getPhases().entrySet()) {
+            sample(sb, "launcher_startup_phase_seconds", label("phase", phase.getKey()), phase.getValue() / 1e9);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        header(sb, "jvm_memory_used_bytes", "gauge", "the used memory of an area");
+        sample(sb, "jvm_memory_used_bytes", label("area", "heap"), memory.getHeapMemoryUsage().getUsed());
+        sample(sb, "jvm_memory_used_bytes", label("area", "nonheap"), memory.getNonHeapMemoryUsage().getUsed());
+        header(sb, "jvm_memory_committed_bytes", "gauge", "the committed memory of an area");
+        sample(sb, "jvm_memory_committed_bytes", label("area", "heap"), memory.getHeapMemoryUsage().getCommitted());
+        sample(sb, "jvm_memory_committed_bytes", label("area", "nonheap"), memory.getNonHeapMemoryUsage()
+            .getCommitted());
+        header(sb, "jvm_memory_max_bytes", "gauge", "the maximum memory of an area, -1 if undefined");
+        sample(sb, "jvm_memory_max_bytes", label("area", "heap"), memory.getHeapMemoryUsage().getMax());
+        sample(sb, "jvm_memory_max_bytes", label("area", "nonheap"), memory.getNonHeapMemoryUsage().getMax());
+
+        header(sb, "jvm_memory_pool_used_bytes", "gauge", "the used memory of a pool, metaspace included");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            sample(sb, "jvm_memory_pool_used_bytes", label("pool", pool.getName()), pool.getUsage().getUsed());
+        }
+        header(sb, "jvm_memory_pool_committed_bytes", "gauge", "the committed memory of a pool");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            sample(sb, "jvm_memory_pool_committed_bytes", label("pool", pool.getName()), pool.getUsage()
+                .getCommitted());
+        }
+        header(sb, "jvm_memory_pool_max_bytes", "gauge", "the maximum memory of a pool, -1 if undefined");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getUsage();
+            sample(sb, "jvm_memory_pool_max_bytes", label("pool", pool.getName()), usage.getMax());
+        }
+
+        header(sb, "jvm_gc_collections_total", "counter", "the collections of a garbage collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(sb, "jvm_gc_collections_total", label("gc", gc.getName()), Math.max(0, gc.getCollectionCount()));
+        }
+        header(sb, "jvm_gc_collection_seconds_total", "counter", "the collection time of a garbage collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(sb, "jvm_gc_collection_seconds_total", label("gc", gc.getName()),
+                Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(sb, "jvm_threads_current", "gauge", "the live threads");
+        sample(sb, "jvm_threads_current", null, threads.getThreadCount());
+        header(sb, "jvm_threads_daemon", "gauge", "the live daemon threads");
+        sample(sb, "jvm_threads_daemon", null, threads.getDaemonThreadCount());
+        header(sb, "jvm_threads_peak", "gauge", "the peak of the live threads");
+        sample(sb, "jvm_threads_peak", null, threads.getPeakThreadCount());
+
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        header(sb, "jvm_classes_loaded", "gauge", "the loaded classes");
+        sample(sb, "jvm_classes_loaded", null, classes.getLoadedClassCount());
+        header(sb, "jvm_classes_unloaded_total", "counter", "the unloaded classes");
+        sample(sb, "jvm_classes_unloaded_total", null, classes.getUnloadedClassCount());
+
+        ClassLoader classLoader = lifecycle.getApplicationClassLoader();
+        if (classLoader instanceof ApplicationClassLoader) {
+            ApplicationClassLoader application = (ApplicationClassLoader) classLoader;
+            header(sb, "launcher_application_classes_loaded", "gauge",
+                "the classes defined by the application class loader");
+            sample(sb, "launcher_application_classes_loaded", null, application.getLoadedClassCount());
+            header(sb, "launcher_application_class_misses_total", "counter",
+                "the class lookups that missed the application class path");
+            sample(sb, "launcher_application_class_misses_total", null, application.getLookupMissCount());
+            header(sb, "launcher_application_findclass_seconds_total", "counter",
+                "the time the application class loader spent finding classes");
+            sample(sb, "launcher_application_findclass_seconds_total", null, application.getFindClassNanos() / 1e9);
+        }
+
+        LauncherExecutors executors = lifecycle.getExecutors();
+        if (executors != null) {
+            executorMetrics(sb, executors.getStats());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the <code>&lt;executor&gt;.&lt;stat&gt;</code> stats as <code>launcher_executor_&lt;stat&gt;</code>
+     * samples labeled by executor.
+     */
+    private static void executorMetrics(StringBuilder sb, Map<String, Long> stats) {
+        String[][] metrics = { { "threads", "gauge" }, { "active", "gauge" }, { "queued", "gauge" },
+                { "submitted", "counter" }, { "completed", "counter" }, { "failed", "counter" },
+                { "rejected", "counter" }, { "task.nanos", "counter" } };
+        for (String[] metric : metrics) {
+            boolean nanos = metric[0].equals("task.nanos");
+            String name = "launcher_executor_" + (nanos ? "task_seconds" : metric[0])
+                    + (metric[1].equals("counter") ? "_total" : "");
+            boolean first = true;
+            for (Map.Entry<String, Long> stat : stats.entrySet()) {
+                String key = stat.getKey();
+                int dot = key.indexOf('.');
+                if (!key.substring(dot + 1).equals(metric[0])) {
+                    continue;
+                }
+                if (first) {
+                    header(sb, name, metric[1], "the " + metric[0].replace('.', ' ') + " of the activator executors");
+                    first = false;
+                }
+                sample(sb, name, label("executor", key.substring(0, dot)), nanos ? stat.getValue() / 1e9 : stat
+                    .getValue());
+            }
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (labels != null) {
+            sb.append(labels);
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(String.valueOf(value));
+        }
+        sb.append('\n');
+    }
+
+    private static String label(String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{" + name + "=\"" + escaped + "\"}";
+    }
+
+    private static void reply(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try {
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Builds the command line of a JVM that runs the launcher with the options of the current JVM.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class JavaCommand {
+
+    private final String executable;
+
+    private final List<String> options;
+
+    private final String classPath;
+
+    private final String mainClass;
+
+    private final List<String> arguments = new ArrayList<String>();
+
+    public JavaCommand(String executable, List<String> options, String classPath, String mainClass) {
+        this.executable = executable;
+        this.options = new ArrayList<String>(options);
+        this.classPath = classPath;
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * Create a command for the {@link Launcher} with the java executable, JVM options and class path of the current
+     * JVM.
+     */
+    public static JavaCommand current() {
+        String javaHome = System.getProperty("java.home");
+        String executable = new File(new File(javaHome, "bin"), "java").getPath();
+        List<String> options = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        return new JavaCommand(executable, options, System.getProperty("java.class.path"), Launcher.class.getName());
+    }
+
+    /**
+     * @return the major java version of the current JVM, e.g. 8 for 1.8
+     */
+    public static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    /**
+     * Remove the options starting with the prefix.
+     */
+    public JavaCommand removeOption(String prefix) {
+        for (Iterator<String> it = options.iterator(); it.hasNext();) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        return this;
+    }
+
+    public JavaCommand addOption(String option) {
+        options.add(option);
+        return this;
+    }
+
+    public boolean hasOption(String prefix) {
+        for (String option : options) {
+            if (option.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public JavaCommand addArgument(String argument) {
+        arguments.add(argument);
+        return this;
+    }
+
+    public List<String> toList() {
+        List<String> command = new ArrayList<String>();
+        command.add(executable);
+        command.addAll(options);
+        if (classPath != null && classPath.length() > 0) {
+            command.add("-classpath");
+            command.add(classPath);
+        }
+        command.add(mainClass);
+        command.addAll(arguments);
+        return command;
+    }
+
+    public ProcessBuilder toProcessBuilder() {
+        return new ProcessBuilder(toList());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String part : toList()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+}
@@ -35,6 +35,9 @@ public class JdkLogManager extends LogManager {
         super.reset();
     }
 
+    /**
+     * Close the log handlers, an {@link AsyncHandler} writes its queued records first.
+     */
     public static void clear() {
         if (instance != null) {
             instance.reset0();
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resolves the heap, garbage collector, metaspace, thread stack and processor count options of the launcher JVM from
+ * the CPU and memory limits of its cgroup (v2 or v1), or of the host when there are none, and the
+ * <code>launcher.jvm.*</code> profile properties.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class JvmOptionResolver {
+
+    /** the system property marking a JVM started with the resolved options */
+    public static final String RESOLVED = "launcher.jvm.resolved";
+
+    private static final long MB = 1024 * 1024;
+
+    /** the memory left besides heap and metaspace: code cache, thread stacks, direct buffers, GC structures */
+    private static final long RESERVED_MEMORY = 128 * MB;
+
+    /** the least heap and metaspace of a resolved JVM */
+    private static final long MIN_HEAP = 32 * MB;
+
+    private static final long MIN_METASPACE = 32 * MB;
+
+    /** the least memory and processors the JVM considers a server, below it picks the serial collector too */
+    private static final long SERVER_MEMORY = 1792 * MB;
+
+    /** a cgroup v1 memory limit at or above this is no limit */
+    private static final long UNLIMITED = Long.MAX_VALUE / 2;
+
+    /** the prefixes of the options replaced by the resolved ones, the obsolete ones included */
+    private static final String[] REPLACED_OPTIONS = { "-Xms", "-Xmx", "-Xmn", "-Xss", "-XX:MetaspaceSize=",
+            "-XX:MaxMetaspaceSize=", "-XX:PermSize=", "-XX:MaxPermSize=", "-XX:ActiveProcessorCount=",
+            "-XX:InitialRAMPercentage=", "-XX:MaxRAMPercentage=", "-XX:MinRAMPercentage=", "-XX:+UseConcMarkSweepGC",
+            "-XX:+UseParNewGC", "-XX:+UseG1GC", "-XX:+UseParallelGC", "-XX:+UseParallelOldGC", "-XX:+UseSerialGC",
+            "-XX:+UseZGC", "-XX:+UseShenandoahGC", "-XX:+CMS", "-XX:-CMS", "-XX:CMS", "-D" + RESOLVED + "=" };
+
+    private final Configuration config;
+
+    private final File cgroupRoot;
+
+    private String source;
+
+    private long memory;
+
+    private double processors;
+
+    public JvmOptionResolver(Configuration config) {
+        this(config, new File("/sys/fs/cgroup"));
+    }
+
+    /**
+     * @param cgroupRoot
+     *            the cgroup file system of the JVM
+     */
+    public JvmOptionResolver(Configuration config, File cgroupRoot) {
+        this.config = config;
+        this.cgroupRoot = cgroupRoot;
+        readLimits();
+    }
+
+    /**
+     * @return where the limits come from: <code>cgroup v2</code>, <code>cgroup v1</code> or <code>host</code>
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the memory limit in bytes
+     */
+    public long getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return the processor limit, a fraction for a partial CPU quota
+     */
+    public double getProcessors() {
+        return processors;
+    }
+
+    /**
+     * Resolve the options of one of several JVMs sharing the limits.
+     *
+     * @param share
+     *            the number of JVMs sharing the limits equally
+     * @return the options, or null if the share of the memory can't hold the least heap, metaspace and reserve
+     */
+    public List<String> resolve(int share) {
+        share = Math.max(1, share);
+        long memory = this.memory / share;
+        int processors = Math.max(1, (int) Math.ceil(this.processors / share));
+        String profile = config.getProperty("launcher.jvm.profile", "balanced").trim().toLowerCase(Locale.ENGLISH);
+
+        // a small share keeps a quarter of its memory in reserve, so heap and metaspace still fit
+        long reserved = Math.min(RESERVED_MEMORY, memory / 4);
+        if (memory - reserved < MIN_HEAP + MIN_METASPACE) {
+            return null;
+        }
+        long metaspace = getLong("launcher.jvm.metaspace.mb", Math.min(256, Math.max(64, memory / MB / 8))) * MB;
+        metaspace = Math.max(MIN_METASPACE, Math.min(metaspace, memory - reserved - MIN_HEAP));
+        long heapPercent = getLong("launcher.jvm.heap.percent", 75);
+        long heap = Math.min(memory * heapPercent / 100, memory - metaspace - reserved);
+        heap = Math.max(MIN_HEAP, heap);
+        long stack = getLong("launcher.jvm.stack.kb", memory < 1024 * MB ? 256 : 512);
+
+        List<String> options = new ArrayList<String>();
+        String heapSize = heap / MB + "m";
+        options.add("-Xmx" + heapSize);
+        if (Boolean.parseBoolean(config.getProperty("launcher.jvm.heap.fixed", "true"))) {
+            options.add("-Xms" + heapSize);
+        }
+        options.add("-Xss" + stack + "k");
+        options.add("-XX:MaxMetaspaceSize=" + metaspace / MB + "m");
+        // java 8 understands it from update 191 on only
+        if (JavaCommand.javaVersion() >= 10) {
+            options.add("-XX:ActiveProcessorCount=" + processors);
+        }
+        options.add(gcOption(profile, memory, processors));
+        return options;
+    }
+
+    /**
+     * Replace the heap, garbage collector, metaspace, thread stack and processor options of the command with the
+     * resolved ones, and mark the command as resolved. The command is left as it is if the share can't be resolved.
+     */
+    public JavaCommand apply(JavaCommand command, int share) {
+        List<String> options = resolve(share);
+        if (options == null) {
+            return command;
+        }
+        for (String prefix : REPLACED_OPTIONS) {
+            command.removeOption(prefix);
+        }
+        for (String option : options) {
+            command.addOption(option);
+        }
+        return command.addOption("-D" + RESOLVED + "=true");
+    }
+
+    /**
+     * @return a description of the limits for the log
+     */
+    public String describe() {
+        return source + " memory " + memory / MB + " MB, processors " + processors;
+    }
+
+    private String gcOption(String profile, long memory, int processors) {
+        String gc = config.getProperty("launcher.jvm.gc", "auto").trim().toLowerCase(Locale.ENGLISH);
+        if (gc.equals("auto")) {
+            if (processors < 2 || memory < SERVER_MEMORY) {
+                gc = "serial";
+            } else if (profile.equals("throughput")) {
+                gc = "parallel";
+            } else if (profile.equals("latency") && JavaCommand.javaVersion() >= 15) {
+                gc = "zgc";
+            } else {
+                gc = "g1";
+            }
+        }
+
+        if (gc.equals("serial")) {
+            return "-XX:+UseSerialGC";
+        } else if (gc.equals("parallel")) {
+            return "-XX:+UseParallelGC";
+        } else if (gc.equals("zgc") || gc.equals("z")) {
+            return "-XX:+UseZGC";
+        } else if (gc.equals("shenandoah")) {
+            return "-XX:+UseShenandoahGC";
+        }
+        return "-XX:+UseG1GC";
+    }
+
+    private long getLong(String name, long defaultValue) {
+        String value = config.getProperty(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private void readLimits() {
+        long hostMemory = physicalMemory();
+        int hostProcessors = Runtime.getRuntime().availableProcessors();
+        long memory = -1;
+        double processors = -1;
+
+        if (new File(cgroupRoot, "cgroup.controllers").exists()) {
+            source = "cgroup v2";
+            String max = readFirstLine(new File(cgroupRoot, "memory.max"));
+            if (max != null && !max.equals("max")) {
+                memory = parseLong(max);
+            }
+            // "$MAX $PERIOD", $MAX is "max" without a quota
+            String cpu = readFirstLine(new File(cgroupRoot, "cpu.max"));
+            if (cpu != null) {
+                String[] parts = cpu.split("\\s+");
+                if (parts.length == 2 && !parts[0].equals("max")) {
+                    processors = quota(parseLong(parts[0]), parseLong(parts[1]));
+                }
+            }
+        } else if (new File(cgroupRoot, "memory").isDirectory()) {
+            source = "cgroup v1";
+            memory = parseLong(readFirstLine(new File(cgroupRoot, "memory/memory.limit_in_bytes")));
+            if (memory >= UNLIMITED) {
+                memory = -1;
+            }
+            File cpu = new File(cgroupRoot, "cpu");
+            if (!cpu.isDirectory()) {
+                cpu = new File(cgroupRoot, "cpu,cpuacct");
+            }
+            processors = quota(parseLong(readFirstLine(new File(cpu, "cpu.cfs_quota_us"))),
+                parseLong(readFirstLine(new File(cpu, "cpu.cfs_period_us"))));
+        }
+
+        if (memory <= 0 && processors <= 0) {
+            source = "host";
+        }
+        this.memory = memory > 0 && (hostMemory <= 0 || memory < hostMemory) ? memory : hostMemory;
+        this.processors = processors > 0 ? Math.min(processors, hostProcessors) : hostProcessors;
+    }
+
+    private static double quota(long quota, long period) {
+        return quota > 0 && period > 0 ? (double) quota / period : -1;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readFirstLine(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line = reader.readLine();
+                return line == null ? null : line.trim();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the physical memory of the host, or the maximum heap of this JVM if the JVM doesn't tell it
+     */
+    private static long physicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        try {
+            Class<?> type = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (type.isInstance(os)) {
+                return ((Long) type.getMethod("getTotalPhysicalMemorySize").invoke(os)).longValue();
+            }
+        } catch (Exception e) {
+            // not a HotSpot JVM
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+}
@@ -16,7 +16,16 @@
 
 package com.dinstone.launcher;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
@@ -30,20 +39,69 @@ import java.util.logging.Logger;
  */
 public class Launcher {
 
+    private static final String ARCHIVE_CLASSES_AT_EXIT = "-XX:ArchiveClassesAtExit=";
+
+    /** the control commands sent by the launcher subcommands */
+    private static final Map<String, String> CONTROL_COMMANDS = new LinkedHashMap<String, String>();
+
+    static {
+        CONTROL_COMMANDS.put("status", ControlCommands.STATUS);
+        CONTROL_COMMANDS.put("metrics", ControlCommands.METRICS);
+        CONTROL_COMMANDS.put("threads", ControlCommands.THREADDUMP);
+        CONTROL_COMMANDS.put("gc", ControlCommands.GC_STATS);
+        CONTROL_COMMANDS.put("startup", ControlCommands.STARTUP);
+        CONTROL_COMMANDS.put("redeploy", ControlCommands.REDEPLOY);
+        CONTROL_COMMANDS.put("loaders", ControlCommands.CLASSLOADERS);
+        CONTROL_COMMANDS.put("apps", ControlCommands.APPS);
+        CONTROL_COMMANDS.put("start-app", ControlCommands.START);
+        CONTROL_COMMANDS.put("stop-app", ControlCommands.STOP);
+        CONTROL_COMMANDS.put("workers", ControlCommands.WORKERS);
+        CONTROL_COMMANDS.put("rolling-restart", ControlCommands.ROLLING_RESTART);
+        CONTROL_COMMANDS.put("jfr-dump", ControlCommands.JFR_DUMP);
+        CONTROL_COMMANDS.put("pauses", ControlCommands.PAUSES);
+    }
+
+    private Configuration config;
+
     private LifecycleManager lifecycle;
 
+    private Boolean relaunchRequired;
+
     public Launcher() {
+        this(null);
+    }
+
+    /**
+     * @param command
+     *            the launcher command, the flight recording starts with the initialization for the
+     *            <code>start</code> and <code>supervise</code> ones
+     */
+    Launcher(String command) {
         Logger logger = Logger.getLogger(Launcher.class.getName());
         try {
-            Configuration config = new Configuration();
+            StartupReport report = new StartupReport();
+
+            Object initEvent = FlightRecording.begin("launcher.init");
+            long begin = report.begin();
+            config = new Configuration();
+            report.record("config.load", begin);
 
+            begin = report.begin();
             String launcherHome = config.getLauncherHome();
+            report.record("launcher.home", begin);
             logger.info("launcher.home is " + launcherHome);
 
+            begin = report.begin();
             String applicationHome = config.getApplicationHome();
+            report.record("application.home", begin);
             logger.info("application.home is " + applicationHome);
 
-            lifecycle = new LifecycleManager(config);
+            lifecycle = new LifecycleManager(config, report);
+
+            if (("start".equals(command) || "supervise".equals(command)) && !isRelaunchRequired()) {
+                lifecycle.startFlightRecording();
+            }
+            FlightRecording.end(initEvent);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "launcher init error.", e);
             throw new RuntimeException(e);
@@ -58,6 +116,158 @@ public class Launcher {
         lifecycle.stop();
     }
 
+    /**
+     * Run the worker JVMs under a supervisor.
+     */
+    public void supervise() throws Exception {
+        lifecycle.supervise();
+    }
+
+    /**
+     * Send a control command to the running launcher.
+     *
+     * @return the reply
+     */
+    public String control(String command) throws IOException {
+        return lifecycle.control(command);
+    }
+
+    /**
+     * Write a dynamic class data sharing archive of the launcher and application classes to
+     * <code>cds/app.jsa</code>. Unless this JVM already archives its classes at exit, the command is run again in a
+     * JVM that does.
+     *
+     * @return the exit code
+     */
+    public int dumpCds() throws Exception {
+        Logger logger = Logger.getLogger(Launcher.class.getName());
+        File cdsDir = new File(config.getLauncherHome(), "cds");
+        File archive = new File(cdsDir, "app.jsa");
+        File jarList = new File(cdsDir, "app.jars");
+
+        JavaCommand command = JavaCommand.current();
+        if (command.hasOption(ARCHIVE_CLASSES_AT_EXIT)) {
+            // the training run, the JVM writes the archive when it exits
+            String seconds = config.getProperty("launcher.cds.training.seconds", "0");
+            lifecycle.train(Long.parseLong(seconds) * 1000);
+            writeJarList(jarList);
+            return 0;
+        }
+
+        if (JavaCommand.javaVersion() < 13) {
+            logger.log(Level.SEVERE, "Dynamic class data sharing archive requires java 13 or later");
+            return 1;
+        }
+
+        if (!cdsDir.exists() && !cdsDir.mkdirs()) {
+            throw new IOException("can't create directory " + cdsDir);
+        }
+        archive.delete();
+        jarList.delete();
+
+        command.removeOption("-XX:SharedArchiveFile=").removeOption("-Xshare:");
+        command.addOption(ARCHIVE_CLASSES_AT_EXIT + archive.getAbsolutePath()).addArgument("dump-cds");
+        logger.log(Level.INFO, "Dumping class data sharing archive: {0}", command);
+
+        Process process = command.toProcessBuilder().inheritIO().start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || !archive.exists()) {
+            jarList.delete();
+            logger.log(Level.SEVERE, "Class data sharing archive dump failed, exit code {0}", exitCode);
+            return exitCode == 0 ? 1 : exitCode;
+        }
+
+        logger.log(Level.INFO, "Class data sharing archive {0} is written, {1} bytes",
+            new Object[] { archive, archive.length() });
+        return 0;
+    }
+
+    /**
+     * @return true if the launcher is to run in a JVM with the options resolved by {@link JvmOptionResolver}, and
+     *         this JVM is not that one
+     */
+    public boolean isRelaunchRequired() {
+        if (relaunchRequired == null) {
+            boolean required = Boolean.parseBoolean(config.getProperty("launcher.jvm.resolve"))
+                    && System.getProperty(JvmOptionResolver.RESOLVED) == null;
+            if (required) {
+                JvmOptionResolver resolver = new JvmOptionResolver(config);
+                if (resolver.resolve(1) == null) {
+                    Logger.getLogger(Launcher.class.getName()).log(Level.WARNING,
+                        "The {0} can''t hold the least heap and metaspace, keeping the JVM options",
+                        resolver.describe());
+                    required = false;
+                }
+            }
+            relaunchRequired = required;
+        }
+        return relaunchRequired;
+    }
+
+    /**
+     * Run the command again in a JVM with the heap, garbage collector, metaspace, thread stack and processor options
+     * resolved from the container limits, and wait until it exits. A termination of this JVM terminates that one
+     * too.
+     *
+     * @return the exit code
+     */
+    public int relaunch(String launcherCommand) throws Exception {
+        Logger logger = Logger.getLogger(Launcher.class.getName());
+        JvmOptionResolver resolver = new JvmOptionResolver(config);
+        JavaCommand command = resolver.apply(JavaCommand.current(), 1).addArgument(launcherCommand);
+        logger.log(Level.INFO, "Resolved JVM options {0} for the {1}", new Object[] { resolver.resolve(1),
+                resolver.describe() });
+        logger.log(Level.INFO, "Relaunching: {0}", command);
+
+        final Process process = command.toProcessBuilder().inheritIO().start();
+        Thread forward = new Thread("relaunch-shutdown") {
+
+            @Override
+            public void run() {
+                process.destroy();
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    // exiting anyway
+                }
+            }
+        };
+        forward.setContextClassLoader(Launcher.class.getClassLoader());
+        Runtime.getRuntime().addShutdownHook(forward);
+        return process.waitFor();
+    }
+
+    /**
+     * Write the <code>${application.home}/lib</code> directory and the sorted names of its jars, start.sh only uses
+     * the archive while they are unchanged.
+     */
+    private void writeJarList(File jarList) throws IOException {
+        List<String> names = new ArrayList<String>();
+        File lib = new File(config.getApplicationHome(), "lib");
+        String[] files = lib.list();
+        if (files != null) {
+            for (String name : files) {
+                if (name.endsWith(".jar")) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(jarList), "UTF-8");
+        try {
+            // start.sh checks the directory of the application, which need not be the launcher home
+            writer.write("# " + lib.getAbsolutePath());
+            writer.write('\n');
+            for (String name : names) {
+                writer.write(name);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
     private static void systemPropertyAndEnvironment() {
         Logger logger = Logger.getLogger(Launcher.class.getName());
 
@@ -79,26 +289,50 @@ public class Launcher {
     public static void main(String[] args) {
         System.setProperty("java.util.logging.manager", JdkLogManager.class.getName());
 
-        systemPropertyAndEnvironment();
+        String command = "start";
+        String argument = null;
+        if (args.length > 1 && CONTROL_COMMANDS.containsKey(args[args.length - 2])) {
+            // a control command on a hosted application
+            command = args[args.length - 2];
+            argument = args[args.length - 1];
+        } else if (args.length > 0) {
+            command = args[args.length - 1];
+        }
+
+        if (!CONTROL_COMMANDS.containsKey(command)) {
+            systemPropertyAndEnvironment();
+        }
 
         try {
-            String command = "start";
-            if (args.length > 0) {
-                command = args[args.length - 1];
-            }
 
-            if (!command.equals("start") && !command.equals("stop")) {
+            if (!command.equals("start") && !command.equals("stop") && !command.equals("dump-cds")
+                    && !command.equals("supervise") && !CONTROL_COMMANDS.containsKey(command)) {
                 System.out.println("Java launcher does not support this command: \"" + command + "\".");
 
                 // Forced to exit the JVM
                 System.exit(0);
             }
 
-            Launcher launcher = new Launcher();
-            if (command.equals("start")) {
+            Launcher launcher = new Launcher(command);
+            if ((command.equals("start") || command.equals("supervise")) && launcher.isRelaunchRequired()) {
+                System.exit(launcher.relaunch(command));
+            } else if (command.equals("start")) {
                 launcher.start();
             } else if (command.equals("stop")) {
                 launcher.stop();
+            } else if (command.equals("supervise")) {
+                launcher.supervise();
+            } else if (command.equals("dump-cds")) {
+                // exit explicitly, the archive is written when the JVM exits
+                System.exit(launcher.dumpCds());
+            } else {
+                try {
+                    String request = CONTROL_COMMANDS.get(command);
+                    System.out.print(launcher.control(argument == null ? request : request + " " + argument));
+                } catch (IOException e) {
+                    System.err.println("Java launcher is not reachable: " + e);
+                    System.exit(1);
+                }
             }
         } catch (Throwable t) {
             t.printStackTrace();
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * The launcher environment handed to {@link Activator#init(LauncherContext)}.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface LauncherContext {
+
+    String getLauncherHome();
+
+    String getApplicationHome();
+
+    /**
+     * @return the launcher configuration property, or null
+     */
+    String getProperty(String name);
+
+    String getProperty(String name, String defaultValue);
+
+    ClassLoader getApplicationClassLoader();
+
+    /**
+     * The executors are shared by the activators and shut down by the launcher once they are stopped.
+     *
+     * @return the executor for computations, with a thread per processor
+     */
+    ExecutorService getCpuExecutor();
+
+    /**
+     * @return the executor for blocking I/O
+     */
+    ExecutorService getIoExecutor();
+
+    ScheduledExecutorService getScheduledExecutor();
+
+    /**
+     * @return the executor starting a virtual thread per task on java 21 or later, the I/O executor before
+     */
+    ExecutorService getVirtualThreadExecutor();
+
+}
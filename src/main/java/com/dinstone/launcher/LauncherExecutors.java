@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The executors shared by the activators of a generation: a CPU executor sized to the processors, an I/O executor, a
+ * scheduled executor and, on java 21 or later, a virtual thread per task executor. They are created on first use,
+ * their threads are named <code>&lt;prefix&gt;-&lt;executor&gt;-N</code> with the application class loader as
+ * context class loader, their tasks are counted and timed, and they are shut down with the generation.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class LauncherExecutors {
+
+    private static final Logger LOG = Logger.getLogger(LauncherExecutors.class.getName());
+
+    public static final String CPU = "cpu";
+
+    public static final String IO = "io";
+
+    public static final String SCHEDULED = "scheduled";
+
+    public static final String VIRTUAL = "virtual";
+
+    private final String prefix;
+
+    private final ClassLoader contextClassLoader;
+
+    private final int cpuThreads;
+
+    private final int ioThreads;
+
+    private final int scheduledThreads;
+
+    /** the created executors by name */
+    private final Map<String, ExecutorService> executors = new LinkedHashMap<String, ExecutorService>();
+
+    private final Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+
+    private boolean shutdown;
+
+    /**
+     * @param prefix
+     *            the prefix of the thread names
+     * @param contextClassLoader
+     *            the context class loader of the threads
+     */
+    public LauncherExecutors(String prefix, ClassLoader contextClassLoader, int cpuThreads, int ioThreads,
+            int scheduledThreads) {
+        this.prefix = prefix;
+        this.contextClassLoader = contextClassLoader;
+        this.cpuThreads = Math.max(1, cpuThreads);
+        this.ioThreads = Math.max(1, ioThreads);
+        this.scheduledThreads = Math.max(1, scheduledThreads);
+    }
+
+    /**
+     * @return the executor for computations, with a thread per processor
+     */
+    public synchronized ExecutorService getCpuExecutor() {
+        ExecutorService executor = executors.get(CPU);
+        if (executor == null) {
+            executor = register(CPU, new InstrumentedThreadPool(cpuThreads, stats(CPU), threadFactory(CPU)));
+        }
+        return executor;
+    }
+
+    /**
+     * @return the executor for blocking I/O, whose idle threads time out
+     */
+    public synchronized ExecutorService getIoExecutor() {
+        ExecutorService executor = executors.get(IO);
+        if (executor == null) {
+            InstrumentedThreadPool pool = new InstrumentedThreadPool(ioThreads, stats(IO), threadFactory(IO));
+            pool.allowCoreThreadTimeOut(true);
+            executor = register(IO, pool);
+        }
+        return executor;
+    }
+
+    public synchronized ScheduledExecutorService getScheduledExecutor() {
+        ExecutorService executor = executors.get(SCHEDULED);
+        if (executor == null) {
+            executor = register(SCHEDULED, new InstrumentedScheduledPool(scheduledThreads, stats(SCHEDULED),
+                threadFactory(SCHEDULED)));
+        }
+        return (ScheduledExecutorService) executor;
+    }
+
+    /**
+     * @return the executor starting a virtual thread per task on java 21 or later, the I/O executor before
+     */
+    public synchronized ExecutorService getVirtualThreadExecutor() {
+        ExecutorService executor = executors.get(VIRTUAL);
+        if (executor != null) {
+            return executor;
+        }
+
+        ExecutorService virtual = newVirtualThreadExecutor(prefix + "-" + VIRTUAL + "-", contextClassLoader);
+        if (virtual == null) {
+            LOG.log(Level.FINE, "Virtual threads require java 21 or later, using the I/O executor");
+            return getIoExecutor();
+        }
+        return register(VIRTUAL, new InstrumentedExecutor(virtual, stats(VIRTUAL)));
+    }
+
+    /**
+     * @return true if {@link #getVirtualThreadExecutor()} runs virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return JavaCommand.javaVersion() >= 21;
+    }
+
+    /**
+     * Shut the executors down, waiting for the running tasks, then interrupt the ones still running.
+     *
+     * @return false if an executor didn't terminate
+     */
+    public boolean shutdown(long timeoutMillis) {
+        List<Map.Entry<String, ExecutorService>> created;
+        synchronized (this) {
+            shutdown = true;
+            created = new ArrayList<Map.Entry<String, ExecutorService>>(executors.entrySet());
+        }
+
+        for (Map.Entry<String, ExecutorService> executor : created) {
+            executor.getValue().shutdown();
+        }
+        boolean terminated = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Map.Entry<String, ExecutorService> executor : created) {
+            ExecutorService service = executor.getValue();
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (!service.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    List<Runnable> dropped = service.shutdownNow();
+                    LOG.log(Level.WARNING, "Executor {0}-{1} didn''t terminate in {2} ms, interrupted, {3} tasks "
+                            + "dropped", new Object[] { prefix, executor.getKey(), String.valueOf(timeoutMillis),
+                            dropped.size() });
+                    terminated &= service.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                service.shutdownNow();
+                Thread.currentThread().interrupt();
+                terminated = false;
+            }
+        }
+        return terminated;
+    }
+
+    /**
+     * @return the threads and the task counts and times of the created executors, keyed by
+     *         <code>&lt;executor&gt;.&lt;stat&gt;</code>; the failed tasks include the rejected ones
+     */
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> values = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, ExecutorService> executor : executors.entrySet()) {
+            String key = executor.getKey() + ".";
+            ExecutorService service = executor.getValue();
+            if (service instanceof ThreadPoolExecutor) {
+                ThreadPoolExecutor pool = (ThreadPoolExecutor) service;
+                values.put(key + "threads", (long) pool.getPoolSize());
+                values.put(key + "active", (long) pool.getActiveCount());
+                values.put(key + "queued", (long) pool.getQueue().size());
+            }
+            stats.get(executor.getKey()).collect(key, values);
+        }
+        return values;
+    }
+
+    /**
+     * @return the {@link #getStats()} in <code>executor.&lt;executor&gt;.&lt;stat&gt;=value</code> lines
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> stat : getStats().entrySet()) {
+            sb.append("executor.").append(stat.getKey()).append('=').append(stat.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private ExecutorService register(String name, ExecutorService executor) {
+        if (shutdown) {
+            executor.shutdown();
+            throw new RejectedExecutionException("executors of " + prefix + " are shut down");
+        }
+        executors.put(name, executor);
+        return executor;
+    }
+
+    private Stats stats(String name) {
+        Stats executorStats = new Stats();
+        stats.put(name, executorStats);
+        return executorStats;
+    }
+
+    private ThreadFactory threadFactory(String name) {
+        return contextThreadFactory(new NamedThreadFactory(prefix + "-" + name, true), contextClassLoader);
+    }
+
+    /**
+     * @return a factory whose threads have the given context class loader
+     */
+    private static ThreadFactory contextThreadFactory(final ThreadFactory factory,
+            final ClassLoader contextClassLoader) {
+        return new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * @return <code>Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())</code>, with
+     *         the context class loader set on the threads, or null before java 21
+     */
+    private static ExecutorService newVirtualThreadExecutor(String prefix, ClassLoader contextClassLoader) {
+        if (!isVirtualThreadSupported()) {
+            return null;
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> virtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = virtualBuilder.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory threadFactory = contextThreadFactory((ThreadFactory) factory.invoke(builder),
+                contextClassLoader);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Can't create the virtual thread executor", e);
+            return null;
+        }
+    }
+
+    /**
+     * The task counts and times of an executor.
+     */
+    private static class Stats {
+
+        final AtomicLong submitted = new AtomicLong();
+
+        final AtomicLong completed = new AtomicLong();
+
+        final AtomicLong failed = new AtomicLong();
+
+        final AtomicLong rejected = new AtomicLong();
+
+        final AtomicLong taskNanos = new AtomicLong();
+
+        void completed(long beginNanos, Throwable error) {
+            taskNanos.addAndGet(System.nanoTime() - beginNanos);
+            completed.incrementAndGet();
+            if (error != null) {
+                failed.incrementAndGet();
+            }
+        }
+
+        void rejected() {
+            rejected.incrementAndGet();
+            failed.incrementAndGet();
+        }
+
+        void collect(String key, Map<String, Long> values) {
+            values.put(key + "submitted", submitted.get());
+            values.put(key + "completed", completed.get());
+            values.put(key + "failed", failed.get());
+            values.put(key + "rejected", rejected.get());
+            values.put(key + "task.nanos", taskNanos.get());
+        }
+
+        RejectedExecutionHandler rejectedHandler() {
+            final RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+            return new RejectedExecutionHandler() {
+
+                @Override
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                    rejected();
+                    abort.rejectedExecution(r, executor);
+                }
+            };
+        }
+    }
+
+    private static class InstrumentedThreadPool extends ThreadPoolExecutor {
+
+        private final Stats stats;
+
+        private final ThreadLocal<Long> begin = new ThreadLocal<Long>();
+
+        InstrumentedThreadPool(int threads, Stats stats, ThreadFactory threadFactory) {
+            super(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+            this.stats = stats;
+            setRejectedExecutionHandler(stats.rejectedHandler());
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            stats.submitted.incrementAndGet();
+            super.execute(command);
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            begin.set(System.nanoTime());
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            stats.completed(begin.get(), t);
+        }
+    }
+
+    private static class InstrumentedScheduledPool extends ScheduledThreadPoolExecutor {
+
+        private final Stats stats;
+
+        private final ThreadLocal<Long> begin = new ThreadLocal<Long>();
+
+        InstrumentedScheduledPool(int threads, Stats stats, ThreadFactory threadFactory) {
+            super(threads, threadFactory);
+            this.stats = stats;
+            setRejectedExecutionHandler(stats.rejectedHandler());
+            // cancelled tasks don't wait in the queue until their delay passes
+            setRemoveOnCancelPolicy(true);
+            setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+            stats.submitted.incrementAndGet();
+            return task;
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable,
+                RunnableScheduledFuture<V> task) {
+            stats.submitted.incrementAndGet();
+            return task;
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            begin.set(System.nanoTime());
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            stats.completed(begin.get(), t);
+        }
+    }
+
+    /**
+     * Counts and times the tasks of an executor that can't be extended, the virtual thread one.
+     */
+    private static class InstrumentedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+
+        private final Stats stats;
+
+        InstrumentedExecutor(ExecutorService delegate, Stats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            stats.submitted.incrementAndGet();
+            try {
+                delegate.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        long begin = System.nanoTime();
+                        Throwable error = null;
+                        try {
+                            command.run();
+                        } catch (RuntimeException e) {
+                            error = e;
+                            throw e;
+                        } catch (Error e) {
+                            error = e;
+                            throw e;
+                        } finally {
+                            stats.completed(begin, error);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                stats.rejected();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.Map;
+
+/**
+ * Launcher management interface, registered as <code>com.dinstone.launcher:type=Launcher</code>.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface LauncherMXBean {
+
+    String OBJECT_NAME = "com.dinstone.launcher:type=Launcher";
+
+    /**
+     * @return the launcher start time in milliseconds since the epoch
+     */
+    long getStartTime();
+
+    /**
+     * @return the total startup nanoseconds, or -1 if the startup is not finished
+     */
+    long getStartupNanos();
+
+    /**
+     * @return the elapsed nanoseconds of each startup phase
+     */
+    Map<String, Long> getStartupPhases();
+
+    String getActivatorClassName();
+
+    /**
+     * @return the activator {@link LifecycleState}
+     */
+    String getLifecycleState();
+
+    /**
+     * @return true if the activators are started and warmed up
+     */
+    boolean isReady();
+
+    /**
+     * @return the number of classes defined by the application class loader
+     */
+    long getApplicationLoadedClassCount();
+
+    /**
+     * @return the number of class lookups that missed the application class path
+     */
+    long getApplicationClassMissCount();
+
+    /**
+     * @return the nanoseconds the application class loader spent finding classes
+     */
+    long getApplicationFindClassNanos();
+
+    /**
+     * @return the threads and the task counts and times of the executors shared by the activators
+     */
+    Map<String, Long> getExecutorStats();
+
+    /**
+     * @return the count, percentiles and maximum microseconds of the garbage collection pauses and the JVM hiccups,
+     *         empty if they are not monitored
+     */
+    Map<String, Long> getPauseStats();
+
+    /**
+     * @return the threshold crossings of the memory pools and the reactions of the listeners, empty if no threshold
+     *         is set
+     */
+    Map<String, Long> getMemoryPressureStats();
+
+}
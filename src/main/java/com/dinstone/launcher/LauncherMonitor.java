@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link LauncherMXBean} implementation backed by the {@link LifecycleManager}.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class LauncherMonitor implements LauncherMXBean {
+
+    private final LifecycleManager lifecycle;
+
+    public LauncherMonitor(LifecycleManager lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    @Override
+    public long getStartTime() {
+        return lifecycle.getStartupReport().getStartTime();
+    }
+
+    @Override
+    public long getStartupNanos() {
+        return lifecycle.getStartupReport().getTotalNanos();
+    }
+
+    @Override
+    public Map<String, Long> getStartupPhases() {
+        return lifecycle.getStartupReport().getPhases();
+    }
+
+    @Override
+    public String getActivatorClassName() {
+        return lifecycle.getActivatorClassName();
+    }
+
+    @Override
+    public String getLifecycleState() {
+        return lifecycle.getState().name();
+    }
+
+    @Override
+    public boolean isReady() {
+        return lifecycle.isReady();
+    }
+
+    @Override
+    public long getApplicationLoadedClassCount() {
+        ApplicationClassLoader classLoader = applicationClassLoader();
+        return classLoader == null ? -1 : classLoader.getLoadedClassCount();
+    }
+
+    @Override
+    public long getApplicationClassMissCount() {
+        ApplicationClassLoader classLoader = applicationClassLoader();
+        return classLoader == null ? -1 : classLoader.getLookupMissCount();
+    }
+
+    @Override
+    public long getApplicationFindClassNanos() {
+        ApplicationClassLoader classLoader = applicationClassLoader();
+        return classLoader == null ? -1 : classLoader.getFindClassNanos();
+    }
+
+    @Override
+    public Map<String, Long> getExecutorStats() {
+        LauncherExecutors executors = lifecycle.getExecutors();
+        return executors == null ? Collections.<String, Long> emptyMap() : executors.getStats();
+    }
+
+    @Override
+    public Map<String, Long> getPauseStats() {
+        PauseMonitor monitor = lifecycle.getPauseMonitor();
+        return monitor == null ? Collections.<String, Long> emptyMap() : monitor.getStats();
+    }
+
+    @Override
+    public Map<String, Long> getMemoryPressureStats() {
+        MemoryPressureMonitor monitor = lifecycle.getMemoryPressureMonitor();
+        return monitor == null ? Collections.<String, Long> emptyMap() : monitor.getStats();
+    }
+
+    private ApplicationClassLoader applicationClassLoader() {
+        ClassLoader classLoader = lifecycle.getApplicationClassLoader();
+        if (classLoader instanceof ApplicationClassLoader) {
+            return (ApplicationClassLoader) classLoader;
+        }
+        return null;
+    }
+
+}
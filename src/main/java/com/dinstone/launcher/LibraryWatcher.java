@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the jars of a directory and notifies the listener once they stop changing for the quiet period, so that a
+ * deploy copying several jars triggers one notification.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class LibraryWatcher {
+
+    private static final Logger LOG = Logger.getLogger(LibraryWatcher.class.getName());
+
+    private final File directory;
+
+    private final long quietMillis;
+
+    private final Runnable listener;
+
+    private WatchService watchService;
+
+    public LibraryWatcher(File directory, long quietMillis, Runnable listener) {
+        this.directory = directory;
+        this.quietMillis = quietMillis;
+        this.listener = listener;
+    }
+
+    /**
+     * Start watching in a daemon thread.
+     *
+     * @throws IOException
+     *             if the directory can't be watched
+     */
+    public synchronized void start() throws IOException {
+        watchService = directory.toPath().getFileSystem().newWatchService();
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        final WatchService service = watchService;
+        Thread thread = new Thread("library-watcher") {
+
+            @Override
+            public void run() {
+                watch(service);
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(LibraryWatcher.class.getClassLoader());
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            watchService = null;
+        }
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                // wait for a jar change, then for the quiet period without one
+                if (!jarChanged(service.take())) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = service.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    jarChanged(key);
+                }
+
+                LOG.log(Level.INFO, "Jars changed in {0}", directory);
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Library change listener failure", e);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private static boolean jarChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || context instanceof Path && context.toString().endsWith(".jar")) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+}
@@ -17,25 +17,41 @@
 package com.dinstone.launcher;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.URL;
-import java.net.URLClassLoader;
-import java.security.AccessControlException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.naming.ConfigurationException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class LifecycleManager {
 
@@ -43,91 +59,1087 @@ public class LifecycleManager {
 
     protected static final String APPLICATION_HOME_TOKEN = "${application.home}";
 
+    protected static final String LAUNCHER_HOME_TOKEN = "${launcher.home}";
+
+    /** the system property telling a worker of the supervisor its number */
+    static final String WORKER_ID = "launcher.worker.id";
+
     /**  */
     private static final String MESSAGE_INVALID = "INVALID";
 
     /**  */
     private static final String MESSAGE_STOPPED = "STOPPED";
 
-    /**  */
-    private static final String DEFAULT_COMMAND = "SHUTDOWN";
+    /**  */
+    private static final String DEFAULT_COMMAND = "SHUTDOWN";
+
+    private static final String MESSAGE_REDEPLOYING = "REDEPLOYING";
+
+    private static final String MESSAGE_BUSY = "BUSY";
+
+    private static final String MESSAGE_NOT_READY = "NOT_READY";
+
+    private static final int DEFAULT_LISTEN_PORT = 5555;
+
+    private static final int DEFAULT_LISTEN_THREADS = 2;
+
+    /** milliseconds a control client may take to send its command or to read the reply */
+    private static final long LISTEN_IDLE_TIMEOUT = 2000;
+
+    /** milliseconds the control client waits for the reply */
+    private static final int CONTROL_READ_TIMEOUT = 30000;
+
+    /**
+     * The shutdown command string we are looking for.
+     */
+    private String shutdownCommand = DEFAULT_COMMAND;
+
+    private int listenPort = DEFAULT_LISTEN_PORT;
+
+    /** the Unix domain socket file listened on instead of the port */
+    private File listenPath;
+
+    private boolean awaitEnabled = true;
+
+    private volatile boolean awaitStop = false;
+
+    private volatile ControlServer controlServer;
+
+    private volatile HealthServer healthServer;
+
+    private volatile PauseMonitor pauseMonitor;
+
+    private volatile MemoryPressureMonitor memoryPressureMonitor;
+
+    private volatile Thread awaitThread;
+
+    private final Configuration config;
+
+    /** the startup report of the running generation, the launcher startup or the last redeploy */
+    private volatile StartupReport report;
+
+    private ActivatorGraph activators;
+
+    /** starts and stops the activators in parallel, created for more than one activator */
+    private ForkJoinPool activatorPool;
+
+    /** the executors shared by the activators of the running generation */
+    private volatile LauncherExecutors executors;
+
+    private final AtomicBoolean activatorStopped = new AtomicBoolean();
+
+    /** the shutdown budget in milliseconds, 0 for no limit */
+    private final long shutdownTimeout;
+
+    private volatile ShutdownWatchdog shutdownWatchdog;
+
+    private volatile WarmupRunner warmupRunner;
+
+    /** dumps the flight recording if the launcher is not ready in time */
+    private volatile Thread slowStartDump;
+
+    /** the generation of the running activators, incremented by every redeploy */
+    private volatile int generation;
+
+    private final AtomicBoolean redeploying = new AtomicBoolean();
+
+    /** serializes the redeploy and the shutdown of the activators */
+    private final Object deployLock = new Object();
+
+    private LibraryWatcher libraryWatcher;
+
+    private final ClassLoaderTracker classLoaderTracker;
+
+    /** whether the shutdown releases the application class loader and verifies it's reclaimed */
+    private final boolean classLoaderCheckOnStop;
+
+    /** the thread whose context class loader is the application class loader */
+    private volatile Thread contextThread;
+
+    /** the name of an application hosted by the launcher, null for the launcher itself */
+    private final String applicationName;
+
+    /** the parent of the application class loader, null for the system class loader */
+    private final ClassLoader parentClassLoader;
+
+    private volatile ApplicationHost applicationHost;
+
+    /** the number of the worker run by a supervisor, -1 for a launcher on its own */
+    private final int workerId;
+
+    private volatile WorkerSupervisor workerSupervisor;
+
+    private volatile ClassLoader applicationClassLoader;
+
+    private ClassListRecorder classListRecorder;
+
+    private ClassPreloader classPreloader;
+
+    private volatile LifecycleState state = LifecycleState.NEW;
+
+    private final ControlCommands controlCommands = new ControlCommands(this);
+
+    public LifecycleManager(Configuration config) {
+        this(config, new StartupReport());
+    }
+
+    public LifecycleManager(Configuration config, StartupReport report) {
+        this(config, report, null, null);
+    }
+
+    /**
+     * Create the lifecycle of an application hosted by the launcher, which has no listener of its own.
+     *
+     * @param applicationName
+     *            the application name, null for the launcher itself
+     * @param parentClassLoader
+     *            the parent of the application class loader, null for the system class loader
+     */
+    LifecycleManager(Configuration config, StartupReport report, String applicationName,
+            ClassLoader parentClassLoader) {
+        this.config = config;
+        this.report = report;
+        this.applicationName = applicationName;
+        this.parentClassLoader = parentClassLoader;
+        this.workerId = (int) getLongProperty(WORKER_ID, -1);
+
+        String enabled = config.getProperty("lifecycle.listen.enabled");
+        if (enabled != null) {
+            this.awaitEnabled = Boolean.parseBoolean(enabled);
+        }
+
+        if (applicationName != null) {
+            this.awaitEnabled = false;
+        } else if (awaitEnabled) {
+            String portPro = config.getProperty("lifecycle.listen.port");
+            try {
+                listenPort = Integer.parseInt(portPro);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Invalid listener port, will use default port {0}", listenPort);
+            }
+
+            String path = config.getProperty("lifecycle.listen.path");
+            if (path != null && path.length() > 0) {
+                listenPath = resolveListenPath(path, config.getLauncherHome());
+            }
+
+            String command = config.getProperty("lifecycle.listen.command");
+            if (command != null) {
+                this.shutdownCommand = command;
+            }
+
+            if (workerId >= 0) {
+                // the supervisor listens on the configured address, its workers next to it
+                listenPort = workerPort(listenPort, workerId);
+                listenPath = workerPath(listenPath, workerId);
+            }
+        } else {
+            LOG.log(Level.WARNING, "Lifecycle listen is disabled");
+        }
+
+        this.shutdownTimeout = getLongProperty("lifecycle.shutdown.timeout", 0) * 1000;
+        this.classLoaderTracker = new ClassLoaderTracker(getLongProperty("lifecycle.classloader.check.seconds", 10)
+                * 1000);
+        this.classLoaderCheckOnStop = Boolean.parseBoolean(config.getProperty("lifecycle.classloader.check.stop"));
+    }
+
+    public void start() throws Exception {
+        // a ready file left by a launcher that was killed
+        readyFile().delete();
+
+        startFlightRecording();
+        createListener();
+        startHealthServer();
+        startPauseMonitor();
+        startMemoryPressureMonitor();
+
+        List<String> applications = splitNames(config.getProperty("launcher.apps"));
+        if (applicationName == null && !applications.isEmpty()) {
+            hostApplications(applications);
+        } else {
+            activate().whenComplete(new BiConsumer<Void, Throwable>() {
+
+                @Override
+                public void accept(Void result, Throwable error) {
+                    if (error == null) {
+                        warmup();
+                    } else if (applicationName != null) {
+                        // the asynchronous startup failed, the other applications go on
+                        stopApplication();
+                    } else {
+                        // the asynchronous startup failed, shut down the launcher
+                        stopListener();
+                    }
+                }
+            });
+        }
+
+        startListener();
+    }
+
+    /**
+     * Start the hosted applications under the common class loader instead of an activator of the launcher.
+     */
+    private void hostApplications(List<String> applications) throws Exception {
+        state = LifecycleState.STARTING;
+        ClassLoader commonClassLoader = null;
+        String commonClassPath = config.getProperty("launcher.common.classpath");
+        if (commonClassPath != null) {
+            String launcherHome = config.getLauncherHome();
+            commonClassPath = commonClassPath.replace(LAUNCHER_HOME_TOKEN, launcherHome);
+            long begin = report.begin();
+            commonClassLoader = createClassLoader(launcherHome, commonClassPath, null);
+            report.record("common.classloader", begin);
+        }
+        if (commonClassLoader == null) {
+            commonClassLoader = LifecycleManager.class.getClassLoader();
+        }
+
+        applicationHost = new ApplicationHost(config, applications, commonClassLoader);
+        long begin = report.begin();
+        int failed = applicationHost.startAll();
+        report.record("applications.start", begin);
+        LOG.log(Level.INFO, "Hosting {0} applications, {1} failed to start", new Object[] { applications.size(),
+                failed });
+        ready();
+    }
+
+    /**
+     * Run the worker JVMs under a supervisor instead of an activator of the launcher. Each worker runs the usual
+     * start, with a control listener of its own that the supervisor probes.
+     */
+    public void supervise() throws Exception {
+        readyFile().delete();
+
+        startFlightRecording();
+        createListener();
+        startHealthServer();
+        startPauseMonitor();
+
+        state = LifecycleState.STARTING;
+        final int nodes = WorkerSupervisor.numaNodes();
+        int cores = (int) getLongProperty("launcher.supervisor.worker.cores", 0);
+        int defaultWorkers = cores > 0 ? Runtime.getRuntime().availableProcessors() / cores : nodes;
+        int workers = (int) Math.max(1, getLongProperty("launcher.supervisor.workers", Math.max(1, defaultWorkers)));
+
+        // bind a worker per node to its node, if numactl is there to do it
+        File numactl = null;
+        if (workers == nodes && nodes > 1
+                && Boolean.parseBoolean(config.getProperty("launcher.supervisor.numa.bind", "true"))) {
+            numactl = WorkerSupervisor.findExecutable("numactl");
+            if (numactl == null) {
+                LOG.log(Level.WARNING, "numactl is not found, the workers are not bound to the NUMA nodes");
+            }
+        }
+        if (!awaitEnabled) {
+            LOG.log(Level.WARNING, "Lifecycle listen is disabled, the workers are only watched for their exit");
+        }
+
+        workerSupervisor = new WorkerSupervisor(new WorkerProcesses(numactl, workers),
+            workers, getLongProperty("launcher.supervisor.probe.seconds", 5) * 1000,
+            getLongProperty("launcher.supervisor.backoff.seconds", 1) * 1000,
+            getLongProperty("launcher.supervisor.backoff.max.seconds", 60) * 1000,
+            getLongProperty("launcher.supervisor.stop.seconds", 30) * 1000);
+        long begin = report.begin();
+        workerSupervisor.start();
+        report.record("workers.start", begin);
+        LOG.log(Level.INFO, "Supervising {0} workers on {1} NUMA nodes", new Object[] { workers, nodes });
+        ready();
+
+        startListener();
+    }
+
+    /**
+     * @return the supervisor of the workers, or null if the launcher runs an activator of its own
+     */
+    public WorkerSupervisor getWorkerSupervisor() {
+        return workerSupervisor;
+    }
+
+    /**
+     * @return the hosted applications, or null if the launcher runs an activator of its own
+     */
+    public ApplicationHost getApplicationHost() {
+        return applicationHost;
+    }
+
+    public String getApplicationHome() {
+        return config.getApplicationHome();
+    }
+
+    /**
+     * @return true once the shutdown of the activators began
+     */
+    boolean isStopping() {
+        return activatorStopped.get();
+    }
+
+    /**
+     * Stop a hosted application and release its class loader, which is verified to be reclaimed in the background.
+     */
+    void stopApplication() {
+        stopActivatorOnce();
+
+        final ClassLoaderTracker.Tracked released;
+        synchronized (deployLock) {
+            released = releaseGeneration();
+        }
+        if (released != null && !ClassLoaderTracker.STATE_RECLAIMED.equals(released.getState())) {
+            Thread thread = new Thread("classloader-check") {
+
+                @Override
+                public void run() {
+                    classLoaderTracker.verify(released);
+                }
+            };
+            thread.setDaemon(true);
+            thread.setContextClassLoader(LifecycleManager.class.getClassLoader());
+            thread.start();
+        }
+    }
+
+    /**
+     * Run the activator through startup and shutdown without the listener, for example to record the classes of a
+     * class data sharing archive.
+     *
+     * @param trainingMillis
+     *            the time the activator runs before it is stopped
+     */
+    public void train(long trainingMillis) throws Exception {
+        activate().toCompletableFuture().get();
+
+        // the warm-up loads the classes of the request paths too
+        WarmupRunner runner = createWarmupRunner();
+        if (runner != null) {
+            long begin = report.begin();
+            runner.start().get();
+            report.record("warmup", begin);
+        }
+        state = LifecycleState.RUNNING;
+        publishStartupReport();
+
+        if (trainingMillis > 0) {
+            Thread.sleep(trainingMillis);
+        }
+
+        stopActivator();
+    }
+
+    public StartupReport getStartupReport() {
+        return report;
+    }
+
+    /**
+     * @return the application class loader, or null if the activator is not created
+     */
+    public ClassLoader getApplicationClassLoader() {
+        return applicationClassLoader;
+    }
+
+    public LifecycleState getState() {
+        return state;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return true while a redeploy runs in the background
+     */
+    boolean isRedeploying() {
+        return redeploying.get();
+    }
+
+    public ClassLoaderTracker getClassLoaderTracker() {
+        return classLoaderTracker;
+    }
+
+    /**
+     * @return true if the activators are started and warmed up
+     */
+    public boolean isReady() {
+        return state == LifecycleState.RUNNING && !activatorStopped.get();
+    }
+
+    /**
+     * @return the activator class names, comma separated in dependency order, or null if they are not created
+     */
+    public String getActivatorClassName() {
+        if (activators == null) {
+            return null;
+        }
+
+        StringBuilder names = new StringBuilder();
+        for (String name : activators.getNames()) {
+            names.append(names.length() == 0 ? "" : ",").append(name);
+        }
+        return names.toString();
+    }
+
+    private void createListener() {
+        if (awaitEnabled) {
+            long begin = report.begin();
+            // Set up a server socket to wait on
+            ServerSocketChannel channel = null;
+            try {
+                if (listenPath != null) {
+                    channel = UnixSockets.bind(listenPath, 50);
+                } else {
+                    InetAddress hostAddress = InetAddress.getByName("localhost");
+                    channel = ServerSocketChannel.open();
+                    channel.socket().bind(new InetSocketAddress(hostAddress, listenPort), 50);
+                }
+
+                int threads = (int) getLongProperty("lifecycle.listen.threads", DEFAULT_LISTEN_THREADS);
+                controlServer = new ControlServer(channel, shutdownCommand, new ControlServer.Handler() {
+
+                    @Override
+                    public String handle(String command) {
+                        return handleCommand(command);
+                    }
+                }, threads, LISTEN_IDLE_TIMEOUT);
+            } catch (IOException e) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+                LOG.log(Level.SEVERE, "Can't create listener on " + (listenPath != null ? listenPath : listenPort), e);
+                throw new RuntimeException(e);
+            }
+            report.record("listener.bind", begin);
+        }
+    }
+
+    /**
+     * Start the HTTP endpoint of the health and the metrics, if it's enabled. The workers of a supervisor listen on
+     * the ports next to it.
+     */
+    private void startHealthServer() {
+        if (applicationName != null || !Boolean.parseBoolean(config.getProperty("launcher.http.enabled"))) {
+            return;
+        }
+
+        long begin = report.begin();
+        String host = config.getProperty("launcher.http.host", "0.0.0.0");
+        int port = (int) getLongProperty("launcher.http.port", 9555);
+        if (workerId >= 0) {
+            port = workerPort(port, workerId);
+        }
+        try {
+            HealthServer server = new HealthServer(this, new InetSocketAddress(host, port),
+                (int) getLongProperty("launcher.http.threads", 2));
+            server.start();
+            healthServer = server;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Can't create health endpoint on " + host + ":" + port, e);
+            throw new RuntimeException(e);
+        }
+        report.record("http.bind", begin);
+    }
+
+    /**
+     * Start monitoring the garbage collection pauses and the JVM hiccups, if it's enabled.
+     */
+    private void startPauseMonitor() {
+        if (applicationName != null || !Boolean.parseBoolean(config.getProperty("launcher.pause.enabled"))) {
+            return;
+        }
+
+        PauseMonitor monitor = new PauseMonitor(getLongProperty("launcher.pause.resolution.ms", 1),
+            getLongProperty("launcher.pause.log.seconds", 60) * 1000);
+        monitor.start();
+        pauseMonitor = monitor;
+    }
+
+    /**
+     * @return the monitor of the pauses, or null if it's not enabled
+     */
+    public PauseMonitor getPauseMonitor() {
+        return pauseMonitor;
+    }
+
+    /**
+     * Set the memory pool thresholds and notify the activators of their crossings, if any threshold is set.
+     */
+    private void startMemoryPressureMonitor() {
+        int usage = (int) getLongProperty("launcher.memory.tenured.usage.percent", 0);
+        int collection = (int) getLongProperty("launcher.memory.tenured.collection.percent", 0);
+        int metaspace = (int) getLongProperty("launcher.memory.metaspace.usage.percent", 0);
+        if (applicationName != null || (usage <= 0 && collection <= 0 && metaspace <= 0)) {
+            return;
+        }
+
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(new MemoryPressureMonitor.Listeners() {
+
+            @Override
+            public List<MemoryPressureListener> get() {
+                return getMemoryPressureListeners();
+            }
+        }, usage, collection, metaspace);
+        monitor.start();
+        memoryPressureMonitor = monitor;
+    }
+
+    /**
+     * @return the started activators implementing {@link MemoryPressureListener}, those of the hosted applications
+     *         included
+     */
+    List<MemoryPressureListener> getMemoryPressureListeners() {
+        List<MemoryPressureListener> listeners = new ArrayList<MemoryPressureListener>();
+        ApplicationHost host = applicationHost;
+        if (host != null) {
+            for (String name : host.getNames()) {
+                LifecycleManager hosted = host.get(name);
+                if (hosted != null) {
+                    listeners.addAll(hosted.getMemoryPressureListeners());
+                }
+            }
+        }
+
+        ActivatorGraph graph = activators;
+        LifecycleState current = state;
+        if (graph != null && (current == LifecycleState.WARMING_UP || current == LifecycleState.RUNNING)) {
+            for (Object activator : graph.getActivators()) {
+                if (activator instanceof MemoryPressureListener) {
+                    listeners.add((MemoryPressureListener) activator);
+                }
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * @return the monitor of the memory pool thresholds, or null if no threshold is set
+     */
+    public MemoryPressureMonitor getMemoryPressureMonitor() {
+        return memoryPressureMonitor;
+    }
+
+    /**
+     * Start the continuous flight recording of the launcher, if it's enabled and not started yet, and dump it if the
+     * launcher is not ready in time.
+     */
+    void startFlightRecording() {
+        if (applicationName != null || !Boolean.parseBoolean(config.getProperty("launcher.jfr.enabled"))) {
+            return;
+        }
+        if (FlightRecording.isRecording()
+                || !FlightRecording.start(config.getProperty("launcher.jfr.settings", "default"),
+                    getLongProperty("launcher.jfr.maxsize.mb", 64) * 1024 * 1024,
+                    getLongProperty("launcher.jfr.maxage.minutes", 30) * 60000)) {
+            return;
+        }
+
+        long slowStart = getLongProperty("launcher.jfr.slow.start.seconds", 120) * 1000;
+        if (slowStart > 0) {
+            slowStartDump = dumpAfter("slow-start", slowStart);
+        }
+    }
+
+    /**
+     * Dump the continuous flight recording to the logs directory.
+     *
+     * @return the dump, or null if there is no recording
+     */
+    public File dumpFlightRecording(String reason) {
+        return FlightRecording.dump(logsDir(), reason);
+    }
+
+    /**
+     * Dump the flight recording once the delay passed, unless the returned thread is interrupted before.
+     */
+    private Thread dumpAfter(final String reason, final long delayMillis) {
+        Thread thread = new Thread("jfr-" + reason) {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                LOG.log(Level.WARNING, "Launcher is {0} beyond {1} ms, dumping the flight recording",
+                    new Object[] { reason, delayMillis });
+                dumpFlightRecording(reason);
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(LifecycleManager.class.getClassLoader());
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Warm up the started activators in the background and publish the readiness once it's done, so that the
+     * control listener answers meanwhile.
+     */
+    private void warmup() {
+        final WarmupRunner runner;
+        try {
+            runner = createWarmupRunner();
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Can't create warm-up tasks", e);
+            state = LifecycleState.FAILED;
+            stopListener();
+            return;
+        }
+        if (runner == null) {
+            ready();
+            return;
+        }
+
+        state = LifecycleState.WARMING_UP;
+        warmupRunner = runner;
+        final Object event = FlightRecording.begin("warmup", applicationName);
+        final long begin = report.begin();
+        LOG.log(Level.INFO, "Activator warm-up with {0} threads", runner.getThreads());
+        runner.start().thenRun(new Runnable() {
+
+            @Override
+            public void run() {
+                warmupRunner = null;
+                long total = report.record("warmup", begin) / 1000000;
+                FlightRecording.end(event);
+                LOG.log(Level.INFO, "Activator warm-up in {0} ms, {1} iterations, {2} failures",
+                    new Object[] { total, runner.getIterations(), runner.getFailures() });
+                if (!runner.isCancelled()) {
+                    ready();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the runner of the activator and configured warm-up tasks, or null if there are none
+     */
+    private WarmupRunner createWarmupRunner() throws Exception {
+        List<WarmupTask> tasks = new ArrayList<WarmupTask>();
+        for (Object activator : activators.getActivators()) {
+            if (activator instanceof WarmupTask) {
+                tasks.add((WarmupTask) activator);
+            }
+        }
+        for (String className : splitNames(config.getProperty("lifecycle.warmup.tasks"))) {
+            Class<?> taskClass = applicationClassLoader.loadClass(className);
+            if (!WarmupTask.class.isAssignableFrom(taskClass)) {
+                throw new IllegalStateException("warm-up task " + className + " is not a "
+                        + WarmupTask.class.getName());
+            }
+            try {
+                tasks.add((WarmupTask) taskClass.getDeclaredConstructor().newInstance());
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("can't create warm-up task " + className, e.getCause());
+            }
+        }
+        if (tasks.isEmpty()) {
+            return null;
+        }
+
+        final ClassLoader classLoader = applicationClassLoader;
+        final ThreadFactory factory = new NamedThreadFactory("warmup", true);
+        int threads = (int) getLongProperty("lifecycle.warmup.threads", Runtime.getRuntime().availableProcessors());
+        long duration = getLongProperty("lifecycle.warmup.duration", 0) * 1000;
+        long iterations = getLongProperty("lifecycle.warmup.iterations", 0);
+        return new WarmupRunner(tasks, threads, duration, iterations, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Publish the readiness, unless the shutdown began.
+     */
+    private void ready() {
+        synchronized (activatorStopped) {
+            if (activatorStopped.get()) {
+                return;
+            }
+
+            state = LifecycleState.RUNNING;
+            stopSlowStartDump();
+            publishStartupReport();
+            if (applicationHost == null && workerSupervisor == null) {
+                startLibraryWatcher();
+            }
+
+            File readyFile = readyFile();
+            try {
+                File parent = readyFile.getParentFile();
+                if (!parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("can't create directory " + parent);
+                }
+                OutputStream out = new FileOutputStream(readyFile);
+                try {
+                    out.write(("ready.time=" + System.currentTimeMillis() + "\n").getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Can't write ready file " + readyFile, e);
+            }
+        }
+    }
+
+    private void stopSlowStartDump() {
+        Thread dump = slowStartDump;
+        if (dump != null) {
+            dump.interrupt();
+            slowStartDump = null;
+        }
+    }
+
+    private void startLibraryWatcher() {
+        if (!Boolean.parseBoolean(config.getProperty("lifecycle.redeploy.watch"))) {
+            return;
+        }
+
+        File lib = new File(config.getApplicationHome(), "lib");
+        long quiet = getLongProperty("lifecycle.redeploy.quiet.seconds", 2) * 1000;
+        libraryWatcher = new LibraryWatcher(lib, quiet, new Runnable() {
+
+            @Override
+            public void run() {
+                String reply = redeploy();
+                if (!MESSAGE_REDEPLOYING.equals(reply)) {
+                    LOG.log(Level.WARNING, "Can''t redeploy the changed jars: {0}", reply);
+                }
+            }
+        });
+        try {
+            libraryWatcher.start();
+            LOG.log(Level.INFO, "Watching {0} for redeploy", lib);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't watch " + lib + " for redeploy", e);
+        }
+    }
+
+    /**
+     * Redeploy the application in the background: a new generation of activators is loaded by a new application
+     * class loader, started and warmed up while the running generation keeps serving, then the running generation
+     * is stopped and its class loader closed. A failed redeploy keeps the running generation.
+     *
+     * @return {@value #MESSAGE_REDEPLOYING}, or {@value #MESSAGE_BUSY} if a redeploy is running, or
+     *         {@value #MESSAGE_NOT_READY} if the application is not ready
+     */
+    public String redeploy() {
+        if (!isReady()) {
+            return MESSAGE_NOT_READY;
+        }
+        if (!redeploying.compareAndSet(false, true)) {
+            return MESSAGE_BUSY;
+        }
+
+        Thread thread = new Thread("launcher-redeploy") {
+
+            @Override
+            public void run() {
+                ClassLoaderTracker.Tracked released = null;
+                Object event = FlightRecording.begin("redeploy", applicationName);
+                try {
+                    released = redeployGeneration();
+                } catch (Throwable e) {
+                    LOG.log(Level.SEVERE, "Redeploy failure", e);
+                } finally {
+                    redeploying.set(false);
+                    FlightRecording.end(event);
+                }
+
+                if (released != null) {
+                    // the failed generation was created on this thread
+                    setContextClassLoader(LifecycleManager.class.getClassLoader());
+                    classLoaderTracker.verify(released);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(LifecycleManager.class.getClassLoader());
+        thread.start();
+        return MESSAGE_REDEPLOYING;
+    }
+
+    /**
+     * @return the released class loader, of the previous generation or of the failed one
+     */
+    private ClassLoaderTracker.Tracked redeployGeneration() {
+        synchronized (deployLock) {
+            if (activatorStopped.get()) {
+                return null;
+            }
+
+            StartupReport previousReport = report;
+            ClassLoader previousClassLoader = applicationClassLoader;
+            ActivatorGraph previousActivators = activators;
+            ForkJoinPool previousPool = activatorPool;
+            LauncherExecutors previousExecutors = executors;
+
+            // the phases of the new generation are recorded in a report of their own
+            StartupReport cycle = new StartupReport();
+            report = cycle;
+            activators = null;
+            activatorPool = null;
+            executors = null;
+            LOG.log(Level.INFO, "Redeploying generation {0}", String.valueOf(generation + 1));
+            try {
+                createActivator();
+                initActivator();
+                startActivator().toCompletableFuture().get();
+
+                WarmupRunner runner = createWarmupRunner();
+                if (runner != null) {
+                    long begin = cycle.begin();
+                    warmupRunner = runner;
+                    runner.start().get();
+                    warmupRunner = null;
+                    cycle.record("warmup", begin);
+                    if (runner.isCancelled()) {
+                        throw new IllegalStateException("redeploy cancelled by the shutdown");
+                    }
+                }
+            } catch (Exception e) {
+                LOG.log(Level.SEVERE, "Redeploy failure, keep generation " + generation, cause(e));
+                warmupRunner = null;
+                try {
+                    // the pool is null if the failure came before the start
+                    if (activators != null) {
+                        activators.stop(activatorPool);
+                    }
+                } catch (RuntimeException stopError) {
+                    // keep the running generation anyway
+                    LOG.log(Level.SEVERE, "Can't stop the failed generation", stopError);
+                }
+                if (activatorPool != null) {
+                    activatorPool.shutdown();
+                }
+                shutdownExecutors(null);
+                ClassLoader failedClassLoader = applicationClassLoader;
+                applicationClassLoader = previousClassLoader;
+                activators = previousActivators;
+                activatorPool = previousPool;
+                executors = previousExecutors;
+                report = previousReport;
+                state = LifecycleState.RUNNING;
+                if (failedClassLoader == previousClassLoader) {
+                    return null;
+                }
+                closeClassLoader(failedClassLoader);
+                return classLoaderTracker.release(failedClassLoader);
+            }
+            generation++;
+
+            long begin = cycle.begin();
+            previousActivators.stop(previousPool);
+            if (previousPool != null) {
+                previousPool.shutdown();
+            }
+            if (previousExecutors != null) {
+                previousExecutors.shutdown(executorShutdownTimeout());
+            }
+            cycle.record("previous.stop", begin);
+
+            begin = cycle.begin();
+            if (contextThread != null && contextThread.getContextClassLoader() == previousClassLoader) {
+                contextThread.setContextClassLoader(applicationClassLoader);
+            }
+            closeClassLoader(previousClassLoader);
+            ClassLoaderTracker.Tracked released = classLoaderTracker.release(previousClassLoader);
+            cycle.record("previous.release", begin);
+
+            cycle.finish();
+            LOG.log(Level.INFO, "Redeployed generation {0} in {1} ms, phases(ns) {2}", new Object[] {
+                    String.valueOf(generation), cycle.getTotalNanos() / 1000000, cycle.getPhases() });
+
+            File reportFile = new File(logsDir(), "redeploy.properties");
+            try {
+                cycle.write(reportFile);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Can't write redeploy report to " + reportFile, e);
+            }
+            return released;
+        }
+    }
+
+    /**
+     * Drop the references to the stopped activators and close their class loader.
+     *
+     * @return the released class loader, or null if it's not tracked
+     */
+    private ClassLoaderTracker.Tracked releaseGeneration() {
+        ClassLoader classLoader = applicationClassLoader;
+        activators = null;
+        applicationClassLoader = null;
+        if (contextThread != null && contextThread.getContextClassLoader() == classLoader) {
+            contextThread.setContextClassLoader(LifecycleManager.class.getClassLoader());
+        }
+        closeClassLoader(classLoader);
+        return classLoaderTracker.release(classLoader);
+    }
 
-    private static final int DEFAULT_LISTEN_PORT = 5555;
+    /**
+     * Close an application class loader and the jars it holds open, the launcher and common class loaders are left
+     * alone.
+     */
+    private void closeClassLoader(ClassLoader classLoader) {
+        if (classLoader instanceof ApplicationClassLoader && classLoader != parentClassLoader) {
+            try {
+                ((Closeable) classLoader).close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Can't close application class loader", e);
+            }
+        }
+    }
 
     /**
-     * The shutdown command string we are looking for.
+     * @return the logs directory of the launcher, or its sub directory of a worker or of a hosted application
      */
-    private String shutdownCommand = DEFAULT_COMMAND;
+    private File logsDir() {
+        File logs = workerLogsDir(workerId);
+        return applicationName == null ? logs : new File(logs, applicationName);
+    }
 
-    private int listenPort = DEFAULT_LISTEN_PORT;
+    private File workerLogsDir(int id) {
+        File logs = new File(config.getLauncherHome(), "logs");
+        return id < 0 ? logs : new File(logs, "worker-" + id);
+    }
 
-    private boolean awaitEnabled = true;
+    private File readyFile() {
+        return new File(logsDir(), "ready");
+    }
 
-    private volatile boolean awaitStop = false;
+    private void publishStartupReport() {
+        report.finish();
+        LOG.log(Level.INFO, "Launcher startup in {0} ms, phases(ns) {1}",
+            new Object[] { report.getTotalNanos() / 1000000, report.getPhases() });
 
-    private volatile ServerSocket awaitSocket;
+        File reportFile = new File(logsDir(), "startup.properties");
+        try {
+            report.write(reportFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't write startup report to " + reportFile, e);
+        }
 
-    private volatile Thread awaitThread;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(applicationName == null ? LauncherMXBean.OBJECT_NAME
+                    : LauncherMXBean.OBJECT_NAME + ",application=" + applicationName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new LauncherMonitor(this), name);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Can't register launcher mbean", e);
+        }
+    }
 
-    private final Configuration config;
+    /**
+     * @return a stage completed when the activator is started
+     */
+    private CompletionStage<Void> activate() throws Exception {
+        state = LifecycleState.STARTING;
+        try {
+            createActivator();
 
-    private Object activator;
+            initActivator();
 
-    public LifecycleManager(Configuration config) {
-        this.config = config;
+            prepareClassList();
 
-        String enabled = config.getProperty("lifecycle.listen.enabled");
-        if (enabled != null) {
-            this.awaitEnabled = Boolean.parseBoolean(enabled);
+            return startActivator();
+        } catch (Exception e) {
+            state = LifecycleState.FAILED;
+            throw e;
         }
+    }
 
-        if (awaitEnabled) {
-            String portPro = config.getProperty("lifecycle.listen.port");
-            try {
-                listenPort = Integer.parseInt(portPro);
-            } catch (Exception e) {
-                LOG.log(Level.WARNING, "Invalid listener port, will use default port {0}", listenPort);
+    /**
+     * Record the classes loaded by a training run, or preload the classes recorded by the last one.
+     */
+    private void prepareClassList() throws InterruptedException {
+        String mode = config.getProperty("application.classlist.mode", "off");
+        if ("off".equalsIgnoreCase(mode)) {
+            return;
+        }
+
+        String applicationHome = config.getApplicationHome();
+        String path = config.getProperty("application.classlist.file", APPLICATION_HOME_TOKEN + "/classes.lst");
+        File file = new File(resolvePath(path, applicationHome));
+        if ("record".equalsIgnoreCase(mode)) {
+            if (!(applicationClassLoader instanceof ApplicationClassLoader)) {
+                LOG.log(Level.WARNING, "Can't record classes without an application class path");
+                return;
             }
 
-            String command = config.getProperty("lifecycle.listen.command");
-            if (command != null) {
-                this.shutdownCommand = command;
+            long seconds = getLongProperty("application.classlist.record.seconds", 60);
+            classListRecorder = new ClassListRecorder(file, seconds * 1000);
+            ((ApplicationClassLoader) applicationClassLoader).setRecorder(classListRecorder);
+            classListRecorder.start();
+        } else if ("replay".equalsIgnoreCase(mode)) {
+            int threads = (int) getLongProperty("application.classlist.replay.threads",
+                Runtime.getRuntime().availableProcessors());
+            ClassPreloader preloader = new ClassPreloader(file, applicationClassLoader, threads);
+            classPreloader = preloader;
+            if (preloader.start() && Boolean.parseBoolean(config.getProperty("application.classlist.replay.await"))) {
+                long begin = report.begin();
+                preloader.await();
+                report.record("classlist.replay", begin);
             }
         } else {
-            LOG.log(Level.WARNING, "Lifecycle listen is disabled");
+            LOG.log(Level.WARNING, "Invalid class list mode {0}, must be off, record or replay", mode);
         }
-
     }
 
-    public void start() throws Exception {
-        createListener();
+    private long getLongProperty(String name, long defaultValue) {
+        String value = config.getProperty(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Invalid {0} value {1}, will use {2}", new Object[] { name, value, defaultValue });
+            return defaultValue;
+        }
+    }
 
-        activate();
+    private static int workerPort(int port, int id) {
+        return port + 1 + id;
+    }
 
-        startListener();
+    private static File workerPath(File path, int id) {
+        return path == null ? null : new File(path.getPath() + "." + id);
     }
 
-    private void createListener() {
-        if (awaitEnabled) {
-            // Set up a server socket to wait on
-            try {
-                InetAddress hostAddress = InetAddress.getByName("localhost");
-                awaitSocket = new ServerSocket(listenPort, 1, hostAddress);
-            } catch (IOException e) {
-                LOG.log(Level.SEVERE, "Can't create listener on " + listenPort, e);
-                throw new RuntimeException(e);
-            }
+    private static File resolveListenPath(String path, String launcherHome) {
+        if (path.startsWith(LAUNCHER_HOME_TOKEN)) {
+            path = launcherHome + path.substring(LAUNCHER_HOME_TOKEN.length());
         }
-    }
 
-    private void activate() throws Exception {
-        createActivator();
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(launcherHome, path);
+    }
 
-        startActivator();
+    private static String resolvePath(String path, String applicationHome) {
+        if (path.startsWith(APPLICATION_HOME_TOKEN)) {
+            return applicationHome + path.substring(APPLICATION_HOME_TOKEN.length());
+        }
+        return path;
     }
 
     protected void startListener() {
+        if (applicationName != null) {
+            // the launcher stops its applications
+            return;
+        }
+
         ApplicationShutdownHook shutdownHook = new ApplicationShutdownHook();
+        // don't pin the application class loader
+        shutdownHook.setContextClassLoader(LifecycleManager.class.getClassLoader());
         Runtime.getRuntime().addShutdownHook(shutdownHook);
 
         if (awaitEnabled) {
@@ -144,71 +1156,43 @@ public class LifecycleManager {
     private boolean await() {
         awaitThread = Thread.currentThread();
 
-        // Loop waiting for a connection and a valid command
-        while (!awaitStop) {
-            // Wait for the next connection
-            Socket socket = null;
-            InputStream stream = null;
-            try {
-                socket = awaitSocket.accept();
-                socket.setSoTimeout(2000); // two seconds
-                stream = socket.getInputStream();
-
-                InetAddress radd = socket.getInetAddress();
-                LOG.log(Level.INFO, "Have an closing request at " + radd);
-            } catch (AccessControlException ace) {
-                LOG.log(Level.WARNING, "security exception", ace);
-                continue;
-            } catch (IOException e) {
-                if (awaitStop) {
-                    // Wait was aborted with socket.close()
-                    break;
-                } else {
-                    LOG.log(Level.SEVERE, "Accept socket failure", e);
-                    throw new RuntimeException(e);
-                }
-            }
+        // serve the control clients until the shutdown command is handled
+        return controlServer.serve() || awaitStop;
+    }
 
-            // Read a set of characters from the socket
-            StringBuilder command = new StringBuilder();
-            int expected = shutdownCommand.length(); // Cut off to avoid DoS attack
-            while (expected > 0) {
-                int ch = -1;
-                try {
-                    ch = stream.read();
-                } catch (IOException e) {
-                    ch = -1;
-                }
-                if (ch < 32) {// Control character or EOF terminates loop
-                    break;
-                }
-                command.append((char) ch);
-                expected--;
-            }
+    private String handleCommand(String command) {
+        Object event = FlightRecording.beginCommand(command);
+        String reply = dispatchCommand(command);
+        FlightRecording.endCommand(event, reply);
+        return reply;
+    }
 
-            // Match against our command string
-            if (command.toString().equals(shutdownCommand)) {
-                stopActivator();
-                response(socket, MESSAGE_STOPPED);
-                break;
-            } else {
-                LOG.log(Level.INFO, "Invalid command '" + command.toString() + "' received");
-                response(socket, MESSAGE_INVALID);
-            }
+    private String dispatchCommand(String command) {
+        if (command.equals(shutdownCommand)) {
+            LOG.log(Level.INFO, "Have a closing request");
+            stopActivatorOnce();
+            return MESSAGE_STOPPED;
         }
 
-        return awaitStop;
+        String reply = controlCommands.handle(command);
+        if (reply != null) {
+            return reply;
+        }
+
+        LOG.log(Level.INFO, "Invalid command '" + command + "' received");
+        return MESSAGE_INVALID;
     }
 
     protected void stopListener() {
-        stopActivator();
+        stopActivatorOnce();
 
         // Notify listener aborted;
         awaitStop = true;
 
-        if (awaitThread != null) {
-            destroyListener();
+        // also aborts an await that is not entered yet
+        destroyListener();
 
+        if (awaitThread != null) {
             awaitThread.interrupt();
             try {
                 awaitThread.join(1000);
@@ -220,39 +1204,49 @@ public class LifecycleManager {
 
     private void destroyListener() {
         // Close the server socket
-        if (awaitSocket != null) {
-            try {
-                awaitSocket.close();
-            } catch (IOException e) {
-            }
+        if (controlServer != null) {
+            controlServer.stop();
+        }
+        if (healthServer != null) {
+            healthServer.stop();
+        }
+        if (listenPath != null) {
+            listenPath.delete();
         }
     }
 
     public void stop() throws Exception {
         try {
-            InetAddress hostAddress = InetAddress.getByName("localhost");
-            Socket socket = new Socket(hostAddress, listenPort);
-            // send close request
-            OutputStream out = socket.getOutputStream();
-            for (int i = 0; i < shutdownCommand.length(); i++) {
-                out.write(shutdownCommand.charAt(i));
-            }
-            out.flush();
-
+            long requested = System.currentTimeMillis();
+            // wait a little longer than the shutdown budget, the watchdog halts the launcher when it's exceeded;
+            // without a budget wait until the launcher replies, however long the activator takes to stop
+            long timeout = shutdownTimeout > 0 ? shutdownTimeout + LISTEN_IDLE_TIMEOUT : 0;
+            ControlClient client = new ControlClient(controlAddress(), timeout);
             LOG.log(Level.INFO, "Activator is stopping");
 
-            // receive close response
-            InputStream in = socket.getInputStream();
-            StringBuilder reply = new StringBuilder();
-            int res = -1;
-            while ((res = in.read()) != -1) {
-                reply.append((char) res);
+            // send close request, without terminator so that earlier launchers understand it too
+            String reply;
+            IOException failure = null;
+            try {
+                reply = client.requestRaw(shutdownCommand);
+            } catch (IOException e) {
+                reply = null;
+                failure = e;
             }
-            socket.close();
 
             // response
-            if (reply.toString().equals(MESSAGE_STOPPED)) {
+            if (MESSAGE_STOPPED.equals(reply)) {
                 LOG.log(Level.INFO, "Activator is stopped");
+                return;
+            }
+
+            Properties shutdown = ShutdownWatchdog.readReport(shutdownReportFile(), requested);
+            if (shutdown != null && ShutdownWatchdog.STATUS_OVERRUN.equals(shutdown.getProperty("shutdown.status"))) {
+                LOG.log(Level.SEVERE, "Activator stop exceeded the {0} ms budget in phase {1} and was halted",
+                    new Object[] { shutdown.getProperty("shutdown.budget.ms"),
+                            shutdown.getProperty("shutdown.overrun.phase") });
+            } else if (failure != null) {
+                throw failure;
             } else {
                 LOG.log(Level.INFO, "Activator stop failure: {0}", reply);
             }
@@ -261,31 +1255,66 @@ public class LifecycleManager {
         }
     }
 
-    private void createActivator() throws Exception {
-        ClassLoader applicationClassLoader = getApplicationClassLoader();
+    private File shutdownReportFile() {
+        return new File(logsDir(), "shutdown.properties");
+    }
+
+    /**
+     * Send a control command to the running launcher.
+     *
+     * @return the reply
+     * @throws IOException
+     *             if the launcher can't be reached
+     */
+    public String control(String command) throws IOException {
+        return new ControlClient(controlAddress(), CONTROL_READ_TIMEOUT).request(command);
+    }
+
+    private SocketAddress controlAddress() throws IOException {
+        if (listenPath != null) {
+            return UnixSockets.address(listenPath);
+        }
+        return new InetSocketAddress(InetAddress.getByName("localhost"), listenPort);
+    }
+
+    void createActivator() throws Exception {
+        Object event = FlightRecording.begin("classloader.create", applicationName);
+        ClassLoader applicationClassLoader = createApplicationClassLoader();
+        FlightRecording.end(event);
 
-        String activatorClassName = config.getProperty("application.activator");
-        if (activatorClassName == null || activatorClassName.length() == 0) {
-            activatorClassName = findActivatorByJarService(applicationClassLoader, "application.activator");
+        List<String> activatorClassNames = splitNames(config.getProperty("application.activator"));
+        if (activatorClassNames.isEmpty()) {
+            long begin = report.begin();
+            activatorClassNames = findActivatorsByJarService(applicationClassLoader, "application.activator");
+            report.record("activator.lookup", begin);
         }
 
-        if (activatorClassName == null || activatorClassName.length() == 0) {
+        if (activatorClassNames.isEmpty()) {
             throw new IllegalStateException("can't find application activator class");
         }
-        LOG.log(Level.INFO, "application.activator is " + activatorClassName);
+        LOG.log(Level.INFO, "application.activator is " + activatorClassNames);
 
         try {
-            Class<?> activatorClass = applicationClassLoader.loadClass(activatorClassName);
+            List<Object> instances = new ArrayList<Object>(activatorClassNames.size());
+            for (String activatorClassName : activatorClassNames) {
+                long begin = report.begin();
+                Class<?> activatorClass = applicationClassLoader.loadClass(activatorClassName);
+                report.record("activator.load", begin);
+
+                // new an activator object
+                begin = report.begin();
+                instances.add(activatorClass.newInstance());
+                report.record("activator.instantiate", begin);
+            }
 
-            // new an activator object
-            activator = activatorClass.newInstance();
+            activators = new ActivatorGraph(instances);
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "can't create activator object", e);
             throw e;
         }
     }
 
-    private ClassLoader getApplicationClassLoader() throws Exception {
+    private ClassLoader createApplicationClassLoader() throws Exception {
         String classPath = config.getProperty("application.classpath");
         if (classPath == null) {
             // default class path
@@ -293,169 +1322,405 @@ public class LifecycleManager {
         }
 
         String applicationHome = config.getApplicationHome();
-        ClassLoader classLoader = createClassLoader(applicationHome, classPath, null);
+        ClassLoader classLoader = createClassLoader(applicationHome, classPath, parentClassLoader);
         if (classLoader == null) {
             classLoader = this.getClass().getClassLoader();
         }
+        applicationClassLoader = classLoader;
+        if (classLoader instanceof ApplicationClassLoader && classLoader != parentClassLoader) {
+            String name = "generation-" + (redeploying.get() ? generation + 1 : generation);
+            classLoaderTracker.track(classLoader, applicationName == null ? name : applicationName + "." + name);
+        }
 
         // set applicationLoader as current thread context class loader
         Thread.currentThread().setContextClassLoader(classLoader);
+        if (!redeploying.get()) {
+            contextThread = Thread.currentThread();
+        }
 
         return classLoader;
     }
 
-    private ClassLoader createClassLoader(String applicationHome, String classPath, ClassLoader parent)
+    ClassLoader createClassLoader(String applicationHome, String classPath, ClassLoader parent)
             throws Exception {
         if ((classPath == null) || (classPath.equals(""))) {
             return parent;
         }
 
-        Set<URL> classPaths = new LinkedHashSet<URL>();
-        String[] tokens = classPath.split(",");
-        for (String token : tokens) {
-            int index = token.indexOf(APPLICATION_HOME_TOKEN);
-            if (index == 0) {
-                token = applicationHome + token.substring(APPLICATION_HOME_TOKEN.length());
-            }
+        ExecutorService executor = Executors.newFixedThreadPool(getScanThreads(),
+            new NamedThreadFactory("classpath-scan", true));
+        try {
+            ClasspathScanner scanner = new ClasspathScanner(executor);
 
-            try {
-                URL url = new URL(token);
-                classPaths.add(url);
-                continue;
-            } catch (Exception e) {
+            long begin = report.begin();
+            List<ClasspathScanner.Location> locations = scanner.resolve(applicationHome, classPath);
+            URL[] urls = new URL[locations.size()];
+            List<File> jars = new ArrayList<File>();
+            List<URL> fallback = new ArrayList<URL>();
+            for (int i = 0; i < urls.length; i++) {
+                ClasspathScanner.Location location = locations.get(i);
+                urls[i] = location.getUrl();
+                if (location.getJar() != null) {
+                    jars.add(location.getJar());
+                } else {
+                    fallback.add(location.getUrl());
+                }
             }
-
-            if (token.endsWith("*.jar")) {
-                token = token.substring(0, token.length() - "*.jar".length());
-
-                File directory = new File(token);
-                if (!directory.exists() || !directory.isDirectory() || !directory.canRead()) {
-                    continue;
+            report.record("classpath.resolve", begin);
+            if (LOG.isLoggable(Level.CONFIG)) {
+                for (int i = 0; i < urls.length; i++) {
+                    LOG.log(Level.CONFIG, "location " + i + " is " + urls[i]);
                 }
+            }
 
-                String[] filenames = directory.list();
-                for (int j = 0; j < filenames.length; j++) {
-                    String filename = filenames[j].toLowerCase();
-                    if (!filename.endsWith(".jar")) {
-                        continue;
-                    }
-                    File file = new File(directory, filenames[j]);
-                    if (!file.exists() || !file.canRead()) {
-                        continue;
-                    }
+            begin = report.begin();
+            List<JarFile> jarFiles = scanner.open(jars);
+            report.record("classpath.open", begin);
 
-                    LOG.log(Level.CONFIG, "Including glob jar file [{0}]", file.getAbsolutePath());
-                    URL url = file.toURI().toURL();
-                    classPaths.add(url);
-                }
-            } else if (token.endsWith(".jar")) {
-                File file = new File(token);
-                if (!file.exists() || !file.canRead()) {
-                    continue;
+            ClasspathIndex index = null;
+            String indexEnabled = config.getProperty("application.classpath.index.enabled");
+            if (!jars.isEmpty() && (indexEnabled == null || Boolean.parseBoolean(indexEnabled))) {
+                begin = report.begin();
+                index = loadClasspathIndex(applicationHome, jars, jarFiles);
+                report.record("classpath.index", begin);
+            }
+            if (index == null) {
+                // the jars were only opened to validate them
+                for (JarFile jarFile : jarFiles) {
+                    jarFile.close();
                 }
+            }
 
-                LOG.log(Level.CONFIG, "Including jar file [{0}]", file.getAbsolutePath());
-                URL url = file.toURI().toURL();
-                classPaths.add(url);
-            } else {
-                File directory = new File(token);
-                if (!directory.exists() || !directory.isDirectory() || !directory.canRead()) {
-                    continue;
-                }
+            String delegation = config.getProperty("application.classloader.delegation", "parent-first");
+            boolean childFirst = "child-first".equalsIgnoreCase(delegation);
+            if (!childFirst && !"parent-first".equalsIgnoreCase(delegation)) {
+                LOG.log(Level.WARNING, "Invalid class loader delegation {0}, will use parent-first", delegation);
+            }
 
-                LOG.log(Level.CONFIG, "Including directory {0}", directory.getAbsolutePath());
-                URL url = directory.toURI().toURL();
-                classPaths.add(url);
+            begin = report.begin();
+            if (parent == null) {
+                parent = ClassLoader.getSystemClassLoader();
+            }
+            ApplicationClassLoader classLoader;
+            if (index == null) {
+                classLoader = new ApplicationClassLoader(urls, urls, null, null, parent, childFirst);
+            } else {
+                URL[] unindexed = fallback.toArray(new URL[fallback.size()]);
+                classLoader = new ApplicationClassLoader(urls, unindexed, index, jarFiles, parent, childFirst);
             }
+            report.record("classloader.create", begin);
+            return classLoader;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        URL[] urls = classPaths.toArray(new URL[classPaths.size()]);
-        if (LOG.isLoggable(Level.CONFIG)) {
-            for (int i = 0; i < urls.length; i++) {
-                LOG.log(Level.CONFIG, "location " + i + " is " + urls[i]);
+    private int getScanThreads() {
+        int threads = Math.min(16, Runtime.getRuntime().availableProcessors() * 2);
+        return (int) Math.max(1, getLongProperty("application.classpath.scan.threads", threads));
+    }
+
+    private ClasspathIndex loadClasspathIndex(String applicationHome, List<File> jars, List<JarFile> jarFiles) {
+        String indexPath = config.getProperty("application.classpath.index");
+        if (indexPath == null || indexPath.length() == 0) {
+            indexPath = APPLICATION_HOME_TOKEN + "/lib.index";
+        }
+        File indexFile = new File(resolvePath(indexPath, applicationHome));
+
+        try {
+            ClasspathIndex index = ClasspathIndex.load(indexFile, jars);
+            if (index != null) {
+                LOG.log(Level.CONFIG, "Loaded class path index {0}", indexFile);
+                return index;
             }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Class path index " + indexFile + " is unreadable, will rebuild it", e);
         }
 
-        ClassLoader classLoader = null;
-        if (parent == null) {
-            classLoader = new URLClassLoader(urls);
-        } else {
-            classLoader = new URLClassLoader(urls, parent);
+        ClasspathIndex index = ClasspathIndex.build(jars, jarFiles);
+
+        try {
+            index.store(indexFile);
+            LOG.log(Level.INFO, "Rebuilt class path index {0} for {1} jars", new Object[] { indexFile, jars.size() });
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't store class path index " + indexFile, e);
         }
-        return classLoader;
+        return index;
     }
 
-    private String findActivatorByJarService(ClassLoader classLoader, String activatorId)
-            throws ConfigurationException {
+    /**
+     * Read the activator class names of every service resource on the class path, in class path order. Blank lines
+     * and <code>#</code> comments are skipped.
+     */
+    List<String> findActivatorsByJarService(ClassLoader classLoader, String activatorId) throws IOException {
         String serviceId = "META-INF/services/" + activatorId;
 
-        InputStream is = classLoader.getResourceAsStream(serviceId);
-        if (is == null) {
-            return null;
+        Set<String> names = new LinkedHashSet<String>();
+        Enumeration<URL> resources = classLoader.getResources(serviceId);
+        while (resources.hasMoreElements()) {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(resources.nextElement().openStream(),
+                "UTF-8"));
+            try {
+                String line;
+                while ((line = rd.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    names.addAll(splitNames(comment < 0 ? line : line.substring(0, comment)));
+                }
+            } finally {
+                rd.close();
+            }
         }
+        return new ArrayList<String>(names);
+    }
 
-        BufferedReader rd;
-        try {
-            rd = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            rd = new BufferedReader(new InputStreamReader(is));
+    private static List<String> splitNames(String names) {
+        List<String> list = new ArrayList<String>();
+        if (names != null) {
+            for (String name : names.split(",")) {
+                name = name.trim();
+                if (name.length() > 0) {
+                    list.add(name);
+                }
+            }
         }
+        return list;
+    }
 
-        String activatorClassName = null;
-        try {
-            // Does not handle all possible input as specified by the
-            // Jar Service Provider specification
-            activatorClassName = rd.readLine();
-            rd.close();
-        } catch (IOException x) {
+    void initActivator() throws Exception {
+        Object event = FlightRecording.begin("activator.init", applicationName);
+        long begin = report.begin();
+        int processors = Runtime.getRuntime().availableProcessors();
+        executors = new LauncherExecutors(applicationName == null ? "launcher" : applicationName,
+            applicationClassLoader, (int) getLongProperty("launcher.executor.cpu.threads", processors),
+            (int) getLongProperty("launcher.executor.io.threads", processors * 4),
+            (int) getLongProperty("launcher.executor.scheduled.threads", 2));
+        activators.init(new DefaultLauncherContext(config, applicationClassLoader, executors));
+        report.record("activator.init", begin);
+        FlightRecording.end(event);
+    }
+
+    /**
+     * Start the activators, independent ones in parallel. The call returns when they are started unless one of them
+     * starts asynchronously.
+     *
+     * @return a stage completed when the activators are started
+     */
+    CompletionStage<Void> startActivator() {
+        final Object event = FlightRecording.begin("activator.start", applicationName);
+        final long begin = report.begin();
+        if (activators.size() > 1 && activatorPool == null) {
+            activatorPool = createActivatorPool();
         }
 
-        return activatorClassName;
-    }
+        CompletionStage<Void> started = activators.start(activatorPool).whenComplete(
+            new BiConsumer<Void, Throwable>() {
+
+                @Override
+                public void accept(Void result, Throwable error) {
+                    long total = report.record("activator.start", begin) / 1000000;
+                    FlightRecording.end(event);
+                    if (error == null) {
+                        LOG.log(Level.INFO, "Activator startup in {0} ms", total);
+                    } else {
+                        state = LifecycleState.FAILED;
+                        LOG.log(Level.SEVERE, "Activator startup failure: {0}", cause(error));
+                    }
+                }
+            });
 
-    private void startActivator() {
-        try {
-            long startTime = System.currentTimeMillis();
+        if (!activators.isAsync()) {
+            try {
+                started.toCompletableFuture().get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(cause(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        return started;
+    }
 
-            Method method = activator.getClass().getMethod("start", (Class[]) null);
-            method.invoke(activator, (Object[]) null);
+    private ForkJoinPool createActivatorPool() {
+        final ClassLoader classLoader = applicationClassLoader;
+        int threads = (int) getLongProperty("application.activator.threads",
+            Math.min(activators.size(), Runtime.getRuntime().availableProcessors()));
+        return new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                };
+                thread.setName("activator-" + thread.getPoolIndex());
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        }, null, false);
+    }
 
-            long total = System.currentTimeMillis() - startTime;
-            LOG.log(Level.INFO, "Activator startup in {0} ms", total);
-        } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Activator startup failure", e);
-            throw new RuntimeException(e);
+    /**
+     * Unwrap the failure of a completion stage.
+     */
+    private static Throwable cause(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
         }
+        return error;
     }
 
-    private void stopActivator() {
+    /**
+     * Stop the activator unless the shutdown command or the shutdown hook did already.
+     */
+    private void stopActivatorOnce() {
+        synchronized (activatorStopped) {
+            if (!activatorStopped.compareAndSet(false, true)) {
+                return;
+            }
+            // take the launcher out of the load balancer first
+            readyFile().delete();
+            if (libraryWatcher != null) {
+                libraryWatcher.stop();
+            }
+        }
+
+        WarmupRunner runner = warmupRunner;
+        if (runner != null) {
+            runner.cancel();
+        }
+        stopSlowStartDump();
+        if (memoryPressureMonitor != null) {
+            // the activators are not notified while they stop
+            memoryPressureMonitor.stop();
+        }
+
+        long slowStop = getLongProperty("launcher.jfr.slow.stop.seconds", 30) * 1000;
+        Thread slowStopDump = null;
+        if (applicationName == null && slowStop > 0 && FlightRecording.isRecording()) {
+            slowStopDump = dumpAfter("slow-stop", slowStop);
+        }
+
+        if (applicationHost != null) {
+            applicationHost.stopAll();
+        }
+
+        ShutdownWatchdog watchdog = new ShutdownWatchdog(shutdownTimeout, shutdownReportFile());
+        if (applicationName == null) {
+            // the watchdog halts the JVM, a hosted application only times its phases
+            watchdog.arm();
+        }
+        shutdownWatchdog = watchdog;
         try {
-            long startTime = System.currentTimeMillis();
+            if (workerSupervisor != null) {
+                long begin = watchdog.begin("workers.stop");
+                workerSupervisor.stop();
+                watchdog.end("workers.stop", begin);
+            }
 
-            Method method = activator.getClass().getMethod("stop", (Class[]) null);
-            method.invoke(activator, (Object[]) null);
+            stopActivator();
 
-            long total = System.currentTimeMillis() - startTime;
-            LOG.log(Level.INFO, "Activator shutdown in {0} ms", total);
-        } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Activator stop error", e);
+            if (classLoaderCheckOnStop) {
+                ClassLoaderTracker.Tracked released;
+                synchronized (deployLock) {
+                    released = releaseGeneration();
+                }
+                if (released != null) {
+                    long begin = watchdog.begin("classloader.check");
+                    classLoaderTracker.verify(released);
+                    watchdog.end("classloader.check", begin);
+                }
+            }
+
+            if (pauseMonitor != null) {
+                pauseMonitor.stop();
+            }
+            if (slowStopDump != null) {
+                slowStopDump.interrupt();
+            }
+            if (applicationName == null && FlightRecording.isRecording()) {
+                long begin = watchdog.begin("jfr.dump");
+                dumpFlightRecording("shutdown");
+                FlightRecording.stop();
+                watchdog.end("jfr.dump", begin);
+            }
+        } finally {
+            shutdownWatchdog = null;
+            watchdog.finish();
         }
     }
 
-    private void response(Socket socket, String message) {
-        // Close the socket now that we are done with it
-        try {
-            OutputStream out = socket.getOutputStream();
-            for (int i = 0; i < message.length(); i++) {
-                out.write(message.charAt(i));
+    void stopActivator() {
+        synchronized (deployLock) {
+            stopGeneration();
+        }
+    }
+
+    private void stopGeneration() {
+        ShutdownWatchdog watchdog = shutdownWatchdog;
+        if (classListRecorder != null) {
+            // the training run ends with the application
+            long begin = watchdog == null ? 0 : watchdog.begin("classlist.finish");
+            classListRecorder.finish();
+            if (watchdog != null) {
+                watchdog.end("classlist.finish", begin);
             }
-            out.flush();
+        }
+        if (classPreloader != null) {
+            // the preloading threads hold the class loader of the generation
+            classPreloader.stop();
+            classPreloader = null;
+        }
 
-            socket.close();
-        } catch (IOException e) {
+        if (activators == null) {
+            return;
+        }
+
+        state = LifecycleState.STOPPING;
+        long startTime = System.nanoTime();
+        Object event = FlightRecording.begin("activator.stop", applicationName);
+
+        // the activators log their own stop errors
+        boolean stopped = activators.stop(activatorPool, watchdog);
+        FlightRecording.end(event);
+
+        long total = (System.nanoTime() - startTime) / 1000000;
+        LOG.log(Level.INFO, "Activator shutdown in {0} ms", total);
+        state = stopped ? LifecycleState.STOPPED : LifecycleState.FAILED;
+
+        if (activatorPool != null) {
+            activatorPool.shutdown();
+            activatorPool = null;
+        }
+        shutdownExecutors(watchdog);
+    }
+
+    /**
+     * Shut down the executors of the stopped activators, interrupting the tasks still running after the timeout.
+     */
+    private void shutdownExecutors(ShutdownWatchdog watchdog) {
+        LauncherExecutors stopped = executors;
+        if (stopped == null) {
+            return;
+        }
+        executors = null;
+        long begin = watchdog == null ? 0 : watchdog.begin("executors.shutdown");
+        stopped.shutdown(executorShutdownTimeout());
+        if (watchdog != null) {
+            watchdog.end("executors.shutdown", begin);
         }
     }
 
+    private long executorShutdownTimeout() {
+        return getLongProperty("launcher.executor.shutdown.seconds", 5) * 1000;
+    }
+
+    /**
+     * @return the executors of the running activators, or null if they are not initialized
+     */
+    public LauncherExecutors getExecutors() {
+        return executors;
+    }
+
     protected class ApplicationShutdownHook extends Thread {
 
         @Override
@@ -470,4 +1735,78 @@ public class LifecycleManager {
             }
         }
     }
+
+    /**
+     * Starts the workers with the command line of the supervisor, so they get its JVM options.
+     */
+    private class WorkerProcesses implements WorkerSupervisor.Workers {
+
+        private final File numactl;
+
+        private final String[] options;
+
+        /** resolves the JVM options of a worker from its share of the container limits */
+        private final JvmOptionResolver resolver;
+
+        private final int workers;
+
+        WorkerProcesses(File numactl, int workers) {
+            this.numactl = numactl;
+            this.workers = workers;
+            String options = config.getProperty("launcher.supervisor.worker.options", "").trim();
+            this.options = options.length() == 0 ? new String[0] : options.split("\\s+");
+            JvmOptionResolver resolver = null;
+            if (Boolean.parseBoolean(config.getProperty("launcher.jvm.resolve"))) {
+                resolver = new JvmOptionResolver(config);
+                List<String> resolved = resolver.resolve(workers);
+                if (resolved == null) {
+                    LOG.log(Level.WARNING, "A worker share of the {0} can''t hold the least heap and metaspace, "
+                            + "the workers keep the JVM options of the supervisor", resolver.describe());
+                    resolver = null;
+                } else {
+                    LOG.log(Level.INFO, "Resolved JVM options {0} for a worker of the {1}",
+                        new Object[] { resolved, resolver.describe() });
+                }
+            }
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Process start(int id) throws IOException {
+            JavaCommand command = JavaCommand.current().removeOption("-D" + WORKER_ID + "=");
+            if (resolver != null) {
+                resolver.apply(command, workers);
+            }
+            for (String option : options) {
+                command.addOption(option);
+            }
+            command.addOption("-D" + WORKER_ID + "=" + id).addArgument("start");
+
+            List<String> line = new ArrayList<String>();
+            if (numactl != null) {
+                line.add(numactl.getPath());
+                line.add("--cpunodebind=" + id);
+                line.add("--membind=" + id);
+            }
+            line.addAll(command.toList());
+
+            File logs = workerLogsDir(id);
+            if (!logs.exists() && !logs.mkdirs()) {
+                throw new IOException("can't create directory " + logs);
+            }
+            return new ProcessBuilder(line).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(logs, "launcher.out"))).start();
+        }
+
+        @Override
+        public SocketAddress address(int id) throws IOException {
+            if (!awaitEnabled) {
+                return null;
+            }
+            if (listenPath != null) {
+                return UnixSockets.address(workerPath(listenPath, id));
+            }
+            return new InetSocketAddress(InetAddress.getByName("localhost"), workerPort(listenPort, id));
+        }
+    }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+/**
+ * The pressure on a memory pool, passed to the {@link MemoryPressureListener}s.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public enum MemoryPressure {
+
+    /** the usage of the pool exceeded its usage threshold, it may yet be collected */
+    WARNING,
+
+    /** the usage of the pool after a collection exceeded its collection usage threshold */
+    CRITICAL
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.management.MemoryUsage;
+
+/**
+ * Notified when a memory pool crosses a threshold of <code>launcher.memory.*</code>, to shed caches or throttle the
+ * intake. Activators may implement it.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface MemoryPressureListener {
+
+    /**
+     * Called on the thread of the memory pressure notifications, one pressure at a time.
+     *
+     * @param pool
+     *            the name of the memory pool
+     * @param usage
+     *            the usage of the pool when the threshold was crossed
+     */
+    void memoryPressure(MemoryPressure pressure, String pool, MemoryUsage usage) throws Exception;
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Sets the usage and collection usage thresholds of the tenured heap pool (the heap pools with a usage threshold:
+ * the old generation of a generational collector, the whole heap of the others) and of the metaspace, and passes
+ * their crossings to the {@link MemoryPressureListener}s on a thread of its own. The crossings and the time the
+ * listeners took to react are logged and counted.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class MemoryPressureMonitor {
+
+    private static final Logger LOG = Logger.getLogger(MemoryPressureMonitor.class.getName());
+
+    private static final String METASPACE = "Metaspace";
+
+    /**
+     * The listeners to notify, looked up on each crossing.
+     */
+    public interface Listeners {
+
+        List<MemoryPressureListener> get();
+    }
+
+    private final Listeners listeners;
+
+    private final int usagePercent;
+
+    private final int collectionPercent;
+
+    private final int metaspacePercent;
+
+    /** the crossings by pool and pressure */
+    private final Map<String, AtomicLong> crossings = new LinkedHashMap<String, AtomicLong>();
+
+    private final AtomicLong reactions = new AtomicLong();
+
+    private final AtomicLong reactionNanos = new AtomicLong();
+
+    private final AtomicLong reactionMaxNanos = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+
+    private final NotificationListener listener = new NotificationListener() {
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            MemoryPressure pressure;
+            if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                pressure = MemoryPressure.WARNING;
+            } else if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                pressure = MemoryPressure.CRITICAL;
+            } else {
+                return;
+            }
+            MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+            crossed(pressure, info.getPoolName(), info.getUsage());
+        }
+    };
+
+    private volatile ExecutorService executor;
+
+    /**
+     * @param usagePercent
+     *            the usage threshold of the tenured pool in percent of its maximum, 0 for none
+     * @param collectionPercent
+     *            the collection usage threshold of the tenured pool, 0 for none
+     * @param metaspacePercent
+     *            the usage threshold of the metaspace, 0 for none; it requires a maximum metaspace size
+     */
+    public MemoryPressureMonitor(Listeners listeners, int usagePercent, int collectionPercent, int metaspacePercent) {
+        this.listeners = listeners;
+        this.usagePercent = usagePercent;
+        this.collectionPercent = collectionPercent;
+        this.metaspacePercent = metaspacePercent;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()) {
+                setThreshold(pool, MemoryPressure.WARNING, usagePercent);
+                if (pool.isCollectionUsageThresholdSupported()) {
+                    setThreshold(pool, MemoryPressure.CRITICAL, collectionPercent);
+                }
+            } else if (METASPACE.equals(pool.getName()) && pool.isUsageThresholdSupported()) {
+                setThreshold(pool, MemoryPressure.WARNING, metaspacePercent);
+            }
+        }
+
+        executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("memory-pressure", true));
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException e) {
+            // removed already
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            // a threshold of 0 disables it
+            pool.setUsageThreshold(0);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(0);
+            }
+        }
+        pools.clear();
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * @return the crossings of each pool and pressure, keyed <code>&lt;pool&gt;.&lt;pressure&gt;.count</code>, and
+     *         the count, failures, total and maximum nanoseconds of the reactions
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<String, Long>();
+        synchronized (crossings) {
+            for (Map.Entry<String, AtomicLong> crossing : crossings.entrySet()) {
+                stats.put(crossing.getKey() + ".count", crossing.getValue().get());
+            }
+        }
+        stats.put("reaction.count", reactions.get());
+        stats.put("reaction.failures", failures.get());
+        stats.put("reaction.total.nanos", reactionNanos.get());
+        stats.put("reaction.max.nanos", reactionMaxNanos.get());
+        return stats;
+    }
+
+    /**
+     * @return the stats as <code>memory.pressure.&lt;stat&gt;=&lt;value&gt;</code> lines
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> stat : getStats().entrySet()) {
+            sb.append("memory.pressure.").append(stat.getKey()).append('=').append(stat.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void setThreshold(MemoryPoolMXBean pool, MemoryPressure pressure, int percent) {
+        if (percent <= 0) {
+            return;
+        }
+        long max = pool.getUsage().getMax();
+        if (max <= 0) {
+            LOG.log(Level.WARNING, "Memory pool {0} has no maximum, no {1} threshold is set",
+                new Object[] { pool.getName(), pressure });
+            return;
+        }
+
+        long threshold = max / 100 * Math.min(percent, 100);
+        if (pressure == MemoryPressure.WARNING) {
+            pool.setUsageThreshold(threshold);
+        } else {
+            pool.setCollectionUsageThreshold(threshold);
+        }
+        if (!pools.contains(pool)) {
+            pools.add(pool);
+        }
+        synchronized (crossings) {
+            crossings.put(key(pool.getName(), pressure), new AtomicLong());
+        }
+        LOG.log(Level.INFO, "Memory pool {0} {1} threshold is {2}% of {3} bytes",
+            new Object[] { pool.getName(), pressure, percent, String.valueOf(max) });
+    }
+
+    /**
+     * Count the crossing and notify the listeners in the background.
+     */
+    void crossed(final MemoryPressure pressure, final String pool, final MemoryUsage usage) {
+        final long crossed = System.nanoTime();
+        AtomicLong count;
+        synchronized (crossings) {
+            count = crossings.get(key(pool, pressure));
+            if (count == null) {
+                count = new AtomicLong();
+                crossings.put(key(pool, pressure), count);
+            }
+        }
+        count.incrementAndGet();
+        LOG.log(Level.WARNING, "Memory pool {0} crossed its {1} threshold, {2} of {3} bytes used", new Object[] {
+                pool, pressure, String.valueOf(usage.getUsed()), String.valueOf(usage.getMax()) });
+
+        ExecutorService notifier = executor;
+        if (notifier == null) {
+            return;
+        }
+        try {
+            notifier.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    react(pressure, pool, usage, crossed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // stopped meanwhile
+        }
+    }
+
+    private void react(MemoryPressure pressure, String pool, MemoryUsage usage, long crossed) {
+        List<MemoryPressureListener> notified = listeners.get();
+        for (MemoryPressureListener target : notified) {
+            try {
+                target.memoryPressure(pressure, pool, usage);
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                LOG.log(Level.SEVERE, "Memory pressure listener " + target.getClass().getName() + " error", e);
+            }
+        }
+
+        long nanos = System.nanoTime() - crossed;
+        reactions.incrementAndGet();
+        reactionNanos.addAndGet(nanos);
+        long max = reactionMaxNanos.get();
+        while (nanos > max && !reactionMaxNanos.compareAndSet(max, nanos)) {
+            max = reactionMaxNanos.get();
+        }
+        LOG.log(Level.INFO, "{0} listeners reacted to the {1} pressure of memory pool {2} in {3} ms", new Object[] {
+                notified.size(), pressure, pool, nanos / 1000000 });
+    }
+
+    private static String key(String pool, MemoryPressure pressure) {
+        return ControlCommands.key(pool) + "." + pressure.name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory that names threads <code>prefix-N</code>.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final String prefix;
+
+    private final boolean daemon;
+
+    public NamedThreadFactory(String prefix, boolean daemon) {
+        this.prefix = prefix;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + "-" + sequence.incrementAndGet());
+        thread.setDaemon(daemon);
+        // not the context class loader of the creating thread, which may be an application class loader
+        thread.setContextClassLoader(NamedThreadFactory.class.getClassLoader());
+        return thread;
+    }
+
+}
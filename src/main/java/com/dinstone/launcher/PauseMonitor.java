@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Records the garbage collection pauses, from the notifications of the collectors, and the JVM hiccups, measured by
+ * a thread that sleeps for the resolution and records how much longer it took, into {@link PauseHistogram}s of
+ * microseconds. The percentiles of the last interval are logged by the same thread.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class PauseMonitor {
+
+    private static final Logger LOG = Logger.getLogger(PauseMonitor.class.getName());
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private final long resolutionMillis;
+
+    private final long logIntervalMillis;
+
+    private final PauseHistogram gcPauses = new PauseHistogram();
+
+    private final PauseHistogram gcInterval = new PauseHistogram();
+
+    private final PauseHistogram hiccups = new PauseHistogram();
+
+    private final PauseHistogram hiccupInterval = new PauseHistogram();
+
+    private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+    private final NotificationListener listener = new NotificationListener() {
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (GC_NOTIFICATION.equals(notification.getType())
+                    && notification.getUserData() instanceof CompositeData) {
+                recordGc((CompositeData) notification.getUserData());
+            }
+        }
+    };
+
+    private Thread thread;
+
+    /**
+     * @param resolutionMillis
+     *            the sleep of the hiccup thread
+     * @param logIntervalMillis
+     *            the interval of the logged percentiles, 0 not to log them
+     */
+    public PauseMonitor(long resolutionMillis, long logIntervalMillis) {
+        this.resolutionMillis = Math.max(1, resolutionMillis);
+        this.logIntervalMillis = logIntervalMillis;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+                emitters.add((NotificationEmitter) gc);
+            }
+        }
+
+        thread = new Thread("launcher-hiccup") {
+
+            @Override
+            public void run() {
+                measure();
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(PauseMonitor.class.getClassLoader());
+        thread.start();
+        LOG.log(Level.INFO, "Pause monitor is started with {0} ms resolution on {1} collectors",
+            new Object[] { resolutionMillis, emitters.size() });
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // removed already
+            }
+        }
+        emitters.clear();
+
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public PauseHistogram getGcPauses() {
+        return gcPauses;
+    }
+
+    public PauseHistogram getHiccups() {
+        return hiccups;
+    }
+
+    /**
+     * @return the count, the 50th and 99th percentiles and the maximum microseconds of the pauses since the start,
+     *         keyed <code>gc.&lt;stat&gt;</code> and <code>hiccup.&lt;stat&gt;</code>
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<String, Long>();
+        stats(stats, "gc", gcPauses);
+        stats(stats, "hiccup", hiccups);
+        return stats;
+    }
+
+    /**
+     * @return the stats as <code>pause.&lt;stat&gt;=&lt;value&gt;</code> lines
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> stat : getStats().entrySet()) {
+            sb.append("pause.").append(stat.getKey()).append('=').append(stat.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    void recordGc(CompositeData notification) {
+        // the cycles of the concurrent collectors are no pauses, their pauses are notified apart
+        String action = String.valueOf(notification.get("gcAction"));
+        if (action.contains("cycle")) {
+            return;
+        }
+        CompositeData info = (CompositeData) notification.get("gcInfo");
+        Object duration = info == null ? null : info.get("duration");
+        if (duration instanceof Long) {
+            long micros = (Long) duration * 1000;
+            gcPauses.record(micros);
+            gcInterval.record(micros);
+        }
+    }
+
+    private void measure() {
+        long resolutionNanos = resolutionMillis * 1000000;
+        long nextLog = System.currentTimeMillis() + logIntervalMillis;
+        while (true) {
+            long begin = System.nanoTime();
+            try {
+                Thread.sleep(resolutionMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long micros = Math.max(0, System.nanoTime() - begin - resolutionNanos) / 1000;
+            hiccups.record(micros);
+            hiccupInterval.record(micros);
+
+            if (logIntervalMillis > 0 && System.currentTimeMillis() >= nextLog) {
+                nextLog = System.currentTimeMillis() + logIntervalMillis;
+                LOG.log(Level.INFO, "Pauses of the last {0} s: gc {1}, hiccup {2}", new Object[] {
+                        String.valueOf(logIntervalMillis / 1000), summary(gcInterval), summary(hiccupInterval) });
+                gcInterval.reset();
+                hiccupInterval.reset();
+            }
+        }
+    }
+
+    private static String summary(PauseHistogram histogram) {
+        return histogram.getCount() + " p50/p99/max " + histogram.getValueAtPercentile(50) + "/"
+                + histogram.getValueAtPercentile(99) + "/" + histogram.getMax() + " us";
+    }
+
+    private static void stats(Map<String, Long> stats, String name, PauseHistogram histogram) {
+        stats.put(name + ".count", histogram.getCount());
+        stats.put(name + ".p50.us", histogram.getValueAtPercentile(50));
+        stats.put(name + ".p99.us", histogram.getValueAtPercentile(99));
+        stats.put(name + ".max.us", histogram.getMax());
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounds the time of the shutdown. The shutdown phases are timed and written to a report file; if they don't finish
+ * within the budget the watchdog logs them, writes a thread dump next to the report and halts the JVM.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class ShutdownWatchdog {
+
+    private static final Logger LOG = Logger.getLogger(ShutdownWatchdog.class.getName());
+
+    public static final String STATUS_COMPLETED = "completed";
+
+    public static final String STATUS_OVERRUN = "overrun";
+
+    private final long budgetMillis;
+
+    private final File reportFile;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long> completed = new LinkedHashMap<String, Long>();
+
+    private final Map<String, Long> running = new LinkedHashMap<String, Long>();
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * @param budgetMillis
+     *            the shutdown budget, 0 for no limit
+     * @param reportFile
+     *            the shutdown report, the thread dump is written to the same directory
+     */
+    public ShutdownWatchdog(long budgetMillis, File reportFile) {
+        this.budgetMillis = budgetMillis;
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Start watching the budget.
+     */
+    public void arm() {
+        if (budgetMillis <= 0) {
+            return;
+        }
+
+        Thread thread = new Thread("shutdown-watchdog") {
+
+            @Override
+            public void run() {
+                try {
+                    if (!finished.await(budgetMillis, TimeUnit.MILLISECONDS)) {
+                        expire();
+                    }
+                } catch (InterruptedException e) {
+                    // disarmed
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(ShutdownWatchdog.class.getClassLoader());
+        thread.start();
+    }
+
+    /**
+     * @return a timestamp for {@link #end(String, long)}
+     */
+    public long begin(String phase) {
+        long begin = System.nanoTime();
+        synchronized (this) {
+            running.put(phase, begin);
+        }
+        return begin;
+    }
+
+    public void end(String phase, long beginNanos) {
+        long elapsed = System.nanoTime() - beginNanos;
+        synchronized (this) {
+            running.remove(phase);
+            completed.put(phase, elapsed);
+        }
+    }
+
+    /**
+     * Disarm the watchdog and write the report.
+     */
+    public void finish() {
+        finished.countDown();
+        writeReport(STATUS_COMPLETED, null);
+    }
+
+    private void expire() {
+        String overrun;
+        Map<String, Long> phases = new LinkedHashMap<String, Long>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            phases.putAll(completed);
+            overrun = running.isEmpty() ? null : running.keySet().iterator().next();
+            for (Map.Entry<String, Long> phase : running.entrySet()) {
+                phases.put(phase.getKey(), now - phase.getValue());
+            }
+        }
+
+        LOG.log(Level.SEVERE, "Shutdown exceeded its budget of {0} ms in phase {1}, phases(ns) {2}, halting",
+            new Object[] { String.valueOf(budgetMillis), overrun, phases });
+        writeReport(STATUS_OVERRUN, overrun);
+
+        String name = "shutdown-threads-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt";
+        File dumpFile = new File(reportFile.getParentFile(), name);
+        try {
+            write(dumpFile, ControlCommands.threadDump());
+            LOG.log(Level.SEVERE, "Thread dump written to {0}", dumpFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't write thread dump to " + dumpFile, e);
+        }
+
+        JdkLogManager.clear();
+        Runtime.getRuntime().halt(1);
+    }
+
+    private void writeReport(String status, String overrun) {
+        long now = System.nanoTime();
+        StringBuilder sb = new StringBuilder();
+        sb.append("#shutdown report").append('\n');
+        sb.append("shutdown.time=").append(startTime).append('\n');
+        sb.append("shutdown.budget.ms=").append(budgetMillis).append('\n');
+        synchronized (this) {
+            for (Map.Entry<String, Long> phase : completed.entrySet()) {
+                sb.append("phase.").append(phase.getKey()).append(".nanos=").append(phase.getValue()).append('\n');
+            }
+            for (Map.Entry<String, Long> phase : running.entrySet()) {
+                sb.append("running.").append(phase.getKey()).append(".nanos=").append(now - phase.getValue())
+                    .append('\n');
+            }
+        }
+        sb.append("shutdown.total.nanos=").append(now - startNanos).append('\n');
+        sb.append("shutdown.status=").append(status).append('\n');
+        if (overrun != null) {
+            sb.append("shutdown.overrun.phase=").append(overrun).append('\n');
+        }
+
+        try {
+            write(reportFile, sb.toString());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Can't write shutdown report to " + reportFile, e);
+        }
+    }
+
+    /**
+     * Read a shutdown report written since the given time.
+     *
+     * @return the report, or null if there is none that recent
+     */
+    public static Properties readReport(File reportFile, long since) {
+        if (!reportFile.isFile()) {
+            return null;
+        }
+
+        Properties report = new Properties();
+        try {
+            InputStream in = new FileInputStream(reportFile);
+            try {
+                report.load(in);
+            } finally {
+                in.close();
+            }
+            return Long.parseLong(report.getProperty("shutdown.time", "0")) >= since ? report : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can't create directory " + parent);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
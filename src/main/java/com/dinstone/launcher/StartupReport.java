@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the elapsed nanoseconds of each bootstrap phase, in the order the phases were run.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class StartupReport {
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+    private volatile long totalNanos = -1;
+
+    /**
+     * Return a timestamp for {@link #record(String, long)}.
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the phase elapsed time since the timestamp returned by {@link #begin()}.
+     *
+     * @return the elapsed nanoseconds
+     */
+    public long record(String phase, long beginNanos) {
+        long elapsed = System.nanoTime() - beginNanos;
+        synchronized (phases) {
+            Long previous = phases.get(phase);
+            phases.put(phase, previous == null ? elapsed : previous + elapsed);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Mark the startup complete.
+     */
+    public void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return total startup nanoseconds, or -1 if the startup is not finished
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public Map<String, Long> getPhases() {
+        synchronized (phases) {
+            return new LinkedHashMap<String, Long>(phases);
+        }
+    }
+
+    /**
+     * Write the report as a properties file, one <code>phase.&lt;name&gt;.nanos</code> entry per phase.
+     *
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can't create directory " + parent);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(toProperties());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return the report in properties file format
+     */
+    public String toProperties() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("#startup report").append('\n');
+        sb.append("startup.time=").append(startTime).append('\n');
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            sb.append("phase.").append(phase.getKey()).append(".nanos=").append(phase.getValue()).append('\n');
+        }
+        sb.append("startup.total.nanos=").append(totalNanos).append('\n');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "StartupReport" + getPhases() + ", total=" + totalNanos;
+    }
+
+}
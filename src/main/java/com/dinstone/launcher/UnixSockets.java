@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unix domain socket channels, resolved by reflection since they require JDK 16 or later.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public final class UnixSockets {
+
+    private static final Logger LOG = Logger.getLogger(UnixSockets.class.getName());
+
+    private static final ProtocolFamily UNIX = unixFamily();
+
+    private static final Method ADDRESS_OF = method("java.net.UnixDomainSocketAddress", "of", Path.class);
+
+    private static final Method SERVER_OPEN = method(ServerSocketChannel.class.getName(), "open",
+        ProtocolFamily.class);
+
+    private static final Method CLIENT_OPEN = method(SocketChannel.class.getName(), "open", ProtocolFamily.class);
+
+    private UnixSockets() {
+    }
+
+    public static boolean isSupported() {
+        return UNIX != null && ADDRESS_OF != null && SERVER_OPEN != null && CLIENT_OPEN != null;
+    }
+
+    public static boolean isUnixAddress(SocketAddress address) {
+        return address != null && address.getClass().getName().equals("java.net.UnixDomainSocketAddress");
+    }
+
+    public static SocketAddress address(File file) throws IOException {
+        checkSupported();
+        return (SocketAddress) invoke(ADDRESS_OF, null, file.toPath());
+    }
+
+    /**
+     * Bind a server channel to the socket file, readable and writable by the owner only. A socket file left by a
+     * launcher that is gone is removed first.
+     *
+     * @throws IOException
+     *             if another launcher listens on the file or the channel can't be bound
+     */
+    public static ServerSocketChannel bind(File file, int backlog) throws IOException {
+        SocketAddress address = address(file);
+        if (file.exists()) {
+            SocketChannel probe = null;
+            try {
+                probe = connect(address);
+                throw new IOException("Socket file " + file + " is in use");
+            } catch (IOException e) {
+                if (probe != null) {
+                    probe.close();
+                    throw e;
+                }
+                // stale socket file
+                LOG.log(Level.INFO, "Remove stale socket file {0}", file);
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can't create directory " + parent);
+        }
+
+        ServerSocketChannel channel = (ServerSocketChannel) invoke(SERVER_OPEN, null, UNIX);
+        try {
+            channel.bind(address, backlog);
+            Files.setPosixFilePermissions(file.toPath(),
+                EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        } catch (UnsupportedOperationException e) {
+            LOG.log(Level.WARNING, "Can''t restrict the permissions of socket file {0}", file);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Connect a blocking channel to the socket address.
+     */
+    public static SocketChannel connect(SocketAddress address) throws IOException {
+        checkSupported();
+        SocketChannel channel = (SocketChannel) invoke(CLIENT_OPEN, null, UNIX);
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private static void checkSupported() throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets require java 16 or later");
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) throws IOException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static ProtocolFamily unixFamily() {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Method method(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs {@link WarmupTask}s in parallel, each task a given number of iterations or all of them until a duration is
+ * elapsed, whichever comes first. The tasks are interleaved so that every one gets its share of the duration.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class WarmupRunner {
+
+    private static final Logger LOG = Logger.getLogger(WarmupRunner.class.getName());
+
+    private final List<WarmupTask> tasks;
+
+    private final int threads;
+
+    private final long durationMillis;
+
+    /** the total iterations of all tasks, Long.MAX_VALUE when only the duration bounds the warm-up */
+    private final long limit;
+
+    private final ThreadFactory threadFactory;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong iterations = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param durationMillis
+     *            the time the warm-up runs at most, 0 for no limit
+     * @param iterations
+     *            the iterations of each task, 0 for no limit; each task runs once when neither is limited
+     */
+    public WarmupRunner(List<WarmupTask> tasks, int threads, long durationMillis, long iterations,
+            ThreadFactory threadFactory) {
+        if (tasks.isEmpty()) {
+            throw new IllegalArgumentException("no warm-up task");
+        }
+
+        this.tasks = new ArrayList<WarmupTask>(tasks);
+        this.durationMillis = durationMillis;
+        if (iterations > 0) {
+            this.limit = iterations > Long.MAX_VALUE / tasks.size() ? Long.MAX_VALUE : iterations * tasks.size();
+        } else {
+            this.limit = durationMillis > 0 ? Long.MAX_VALUE : tasks.size();
+        }
+        this.threads = (int) Math.max(1, Math.min(threads, limit));
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Start the worker threads.
+     *
+     * @return a future completed when the warm-up is finished or cancelled
+     */
+    public CompletableFuture<Void> start() {
+        final long deadline = durationMillis > 0 ? System.nanoTime() + durationMillis * 1000000 : 0;
+        final AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            threadFactory.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        work(deadline);
+                    } finally {
+                        if (running.decrementAndGet() == 0) {
+                            done.complete(null);
+                        }
+                    }
+                }
+            }).start();
+        }
+        return done;
+    }
+
+    private void work(long deadline) {
+        long n;
+        while (!cancelled && (n = sequence.getAndIncrement()) < limit) {
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                break;
+            }
+
+            WarmupTask task = tasks.get((int) (n % tasks.size()));
+            try {
+                task.warmup();
+            } catch (Throwable e) {
+                if (failures.getAndIncrement() == 0) {
+                    LOG.log(Level.WARNING, "Warm-up task " + task.getClass().getName() + " failure", e);
+                }
+            }
+            iterations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stop the warm-up after the running iterations.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the iterations run so far, including the failed ones
+     */
+    public long getIterations() {
+        return iterations.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+/**
+ * A unit of warm-up work, run repeatedly after the activators are started and before the application is reported
+ * ready. Activators may implement it, or tasks are configured with <code>lifecycle.warmup.tasks</code>.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public interface WarmupTask {
+
+    /**
+     * Run one warm-up iteration; it may be called concurrently.
+     */
+    void warmup() throws Exception;
+
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a number of worker JVMs, watches them over their control listeners and restarts the ones that exit or stop
+ * answering, with an exponential backoff. A rolling restart replaces one worker at a time and waits until the new one
+ * is ready, so the workers never stop serving all at once.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class WorkerSupervisor {
+
+    private static final Logger LOG = Logger.getLogger(WorkerSupervisor.class.getName());
+
+    public static final String MESSAGE_RESTARTING = "RESTARTING";
+
+    public static final String MESSAGE_BUSY = "BUSY";
+
+    public static final String MESSAGE_STOPPING = "STOPPING";
+
+    /** probes a worker may miss in a row before it's killed */
+    private static final int PROBE_FAILURES = 3;
+
+    /** milliseconds a worker has to answer its first probe, or to become ready in a rolling restart */
+    private static final long START_TIMEOUT = 120000;
+
+    /** milliseconds a worker must run to reset the backoff */
+    private static final long STABLE_MILLIS = 60000;
+
+    /**
+     * Starts the worker JVMs and tells their control addresses.
+     */
+    public interface Workers {
+
+        Process start(int id) throws IOException;
+
+        /**
+         * @return the control address of the worker, or null if the workers don't listen
+         */
+        SocketAddress address(int id) throws IOException;
+    }
+
+    private final Workers workers;
+
+    private final long probeMillis;
+
+    private final long backoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final long stopMillis;
+
+    private final Worker[] slots;
+
+    private final AtomicBoolean rolling = new AtomicBoolean();
+
+    private volatile boolean stopped;
+
+    /**
+     * @param probeMillis
+     *            the interval of the status probes
+     * @param backoffMillis
+     *            the delay of the first restart, doubled by every restart up to the maximum
+     * @param stopMillis
+     *            the milliseconds a worker has to stop before it's killed
+     */
+    public WorkerSupervisor(Workers workers, int count, long probeMillis, long backoffMillis, long maxBackoffMillis,
+            long stopMillis) {
+        this.workers = workers;
+        this.probeMillis = probeMillis;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.stopMillis = stopMillis;
+        this.slots = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new Worker(i);
+        }
+    }
+
+    /**
+     * Start the workers and their monitors.
+     */
+    public void start() {
+        for (Worker worker : slots) {
+            worker.monitor.start();
+        }
+    }
+
+    /**
+     * Stop the workers in parallel and wait until they exit, killing the ones that take longer than the stop time.
+     */
+    public void stop() {
+        stopped = true;
+        for (Worker worker : slots) {
+            Process process = worker.process;
+            if (process != null) {
+                // the shutdown hook of the worker stops it gracefully
+                process.destroy();
+            }
+        }
+        for (Worker worker : slots) {
+            worker.monitor.interrupt();
+            try {
+                worker.monitor.join(stopMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            awaitExit(worker);
+        }
+    }
+
+    /**
+     * Restart the workers one at a time in the background.
+     *
+     * @return {@value #MESSAGE_RESTARTING}, or {@value #MESSAGE_BUSY} if a rolling restart is running, or
+     *         {@value #MESSAGE_STOPPING}
+     */
+    public String rollingRestart() {
+        if (stopped) {
+            return MESSAGE_STOPPING;
+        }
+        if (!rolling.compareAndSet(false, true)) {
+            return MESSAGE_BUSY;
+        }
+
+        Thread thread = new Thread("rolling-restart") {
+
+            @Override
+            public void run() {
+                try {
+                    for (Worker worker : slots) {
+                        if (stopped || !worker.replace()) {
+                            return;
+                        }
+                    }
+                    LOG.log(Level.INFO, "Rolling restart of {0} workers is finished", slots.length);
+                } finally {
+                    rolling.set(false);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(WorkerSupervisor.class.getClassLoader());
+        thread.start();
+        return MESSAGE_RESTARTING;
+    }
+
+    public int getWorkerCount() {
+        return slots.length;
+    }
+
+    /**
+     * @return the state of every worker in <code>key=value</code> lines
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("workers=").append(slots.length).append('\n');
+        sb.append("rolling.restart=").append(rolling.get()).append('\n');
+        long now = System.currentTimeMillis();
+        for (Worker worker : slots) {
+            String prefix = "worker." + worker.id + ".";
+            sb.append(prefix).append("state=").append(worker.state).append('\n');
+            sb.append(prefix).append("pid=").append(pid(worker.process)).append('\n');
+            sb.append(prefix).append("restarts=").append(worker.restarts).append('\n');
+            sb.append(prefix).append("uptime.ms=").append(worker.process == null ? 0 : now - worker.startTime)
+                .append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of NUMA nodes of the machine, 1 if the kernel doesn't tell
+     */
+    public static int numaNodes() {
+        File[] nodes = new File("/sys/devices/system/node").listFiles();
+        int count = 0;
+        if (nodes != null) {
+            for (File node : nodes) {
+                if (node.isDirectory() && node.getName().matches("node[0-9]+")) {
+                    count++;
+                }
+            }
+        }
+        return Math.max(1, count);
+    }
+
+    /**
+     * @return the executable of that name on the PATH, or null if there is none
+     */
+    public static File findExecutable(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            File file = new File(dir, name);
+            if (file.isFile() && file.canExecute()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wait until the process of the worker exits, kill it after the stop time.
+     */
+    private void awaitExit(Worker worker) {
+        Process process = worker.process;
+        if (process == null) {
+            return;
+        }
+        try {
+            if (!process.waitFor(stopMillis, TimeUnit.MILLISECONDS)) {
+                LOG.log(Level.WARNING, "Worker {0} didn''t stop in {1} ms, killing it",
+                    new Object[] { worker.id, String.valueOf(stopMillis) });
+                process.destroyForcibly().waitFor();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * @return the process id, or -1 if the JVM can't tell it
+     */
+    private static long pid(Process process) {
+        if (process == null) {
+            return -1;
+        }
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return ((Long) pid.invoke(process)).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        static final String STATE_STARTING = "STARTING";
+
+        static final String STATE_RUNNING = "RUNNING";
+
+        static final String STATE_BACKOFF = "BACKOFF";
+
+        static final String STATE_STOPPED = "STOPPED";
+
+        final int id;
+
+        final Thread monitor;
+
+        volatile Process process;
+
+        volatile String state = STATE_STARTING;
+
+        volatile boolean ready;
+
+        volatile long startTime;
+
+        volatile int restarts;
+
+        /** the process is replaced by a rolling restart, it's started again without backoff */
+        volatile boolean replacing;
+
+        Worker(int id) {
+            this.id = id;
+            this.monitor = new Thread(this, "worker-monitor-" + id);
+            monitor.setDaemon(true);
+            monitor.setContextClassLoader(WorkerSupervisor.class.getClassLoader());
+        }
+
+        @Override
+        public void run() {
+            long backoff = backoffMillis;
+            while (!stopped) {
+                state = STATE_STARTING;
+                ready = false;
+                startTime = System.currentTimeMillis();
+                try {
+                    process = workers.start(id);
+                    LOG.log(Level.INFO, "Worker {0} is started, pid {1}", new Object[] { id,
+                            String.valueOf(pid(process)) });
+                    watch(process);
+                } catch (IOException e) {
+                    LOG.log(Level.SEVERE, "Worker " + id + " can't be started", e);
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+                if (stopped) {
+                    break;
+                }
+
+                if (replacing) {
+                    replacing = false;
+                    backoff = backoffMillis;
+                    continue;
+                }
+
+                restarts++;
+                if (System.currentTimeMillis() - startTime >= STABLE_MILLIS) {
+                    backoff = backoffMillis;
+                }
+                state = STATE_BACKOFF;
+                Process exited = process;
+                LOG.log(Level.WARNING, "Worker {0} exited with code {1}, restart {2} in {3} ms", new Object[] { id,
+                        exited == null ? "none" : String.valueOf(exited.exitValue()), restarts,
+                        String.valueOf(backoff) });
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+
+            // a process started while the supervisor was stopping
+            Process last = process;
+            if (last != null) {
+                last.destroy();
+            }
+            state = STATE_STOPPED;
+        }
+
+        /**
+         * Probe the worker until its process exits, and kill it once it stops answering.
+         */
+        private void watch(Process process) throws InterruptedException {
+            int failures = 0;
+            boolean answered = false;
+            while (!process.waitFor(probeMillis, TimeUnit.MILLISECONDS)) {
+                if (stopped || replacing) {
+                    // the process is being stopped
+                    continue;
+                }
+
+                try {
+                    SocketAddress address = workers.address(id);
+                    if (address == null) {
+                        ready = true;
+                        state = STATE_RUNNING;
+                        continue;
+                    }
+                    String status = new ControlClient(address, probeMillis).request(ControlCommands.STATUS);
+                    ready = ("\n" + status).contains("\nready=true\n");
+                    state = ready ? STATE_RUNNING : STATE_STARTING;
+                    answered = true;
+                    failures = 0;
+                } catch (IOException e) {
+                    // a worker starting its activators may not answer yet
+                    if (answered || System.currentTimeMillis() - startTime > START_TIMEOUT) {
+                        failures++;
+                    }
+                    if (failures >= PROBE_FAILURES) {
+                        LOG.log(Level.SEVERE, "Worker {0} missed {1} probes, killing it: {2}", new Object[] { id,
+                                failures, e.toString() });
+                        process.destroyForcibly();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stop the process, let the monitor start a new one and wait until it's ready.
+         *
+         * @return false if the new process is not ready in time
+         */
+        boolean replace() {
+            Process previous = process;
+            LOG.log(Level.INFO, "Rolling restart of worker {0}", id);
+            replacing = true;
+            ready = false;
+            if (previous != null) {
+                previous.destroy();
+                awaitExit(this);
+            }
+
+            long deadline = System.currentTimeMillis() + START_TIMEOUT;
+            while (!stopped && System.currentTimeMillis() < deadline) {
+                if (ready && process != previous) {
+                    return true;
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            if (!stopped) {
+                LOG.log(Level.SEVERE, "Worker {0} is not ready after the rolling restart, the restart is aborted", id);
+            }
+            return false;
+        }
+    }
+
+}
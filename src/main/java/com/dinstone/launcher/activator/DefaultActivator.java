@@ -18,55 +18,44 @@ package com.dinstone.launcher.activator;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import com.dinstone.launcher.LauncherContext;
+
 public class DefaultActivator {
 
     private static final Logger LOG = Logger.getLogger(DefaultActivator.class.getName());
 
-    private final Thread job;
+    /** the shared executor of the launcher, which shuts it down after the stop */
+    private ScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> job;
 
-    public DefaultActivator() {
-        job = new JobRunner("Time-Job");
+    public void init(LauncherContext context) {
+        scheduler = context.getScheduledExecutor();
     }
 
     public void start() {
-        job.start();
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        job = scheduler.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                LOG.info("currentime " + format.format(new Date()));
+            }
+        }, 0, 1, TimeUnit.SECONDS);
         LOG.info("Activator start");
     }
 
     public void stop() {
-        try {
-            job.interrupt();
-            job.join();
-        } catch (Exception e) {
-            // ignore
-            e.printStackTrace();
+        if (job != null) {
+            job.cancel(true);
         }
 
         LOG.info("Activator stop");
     }
 
-    class JobRunner extends Thread {
-
-        public JobRunner(String name) {
-            setName(name);
-        }
-
-        @Override
-        public void run() {
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            while (!Thread.interrupted()) {
-                LOG.info("currentime " + format.format(new Date()));
-
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        }
-
-    }
-
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A command handled by the control listener.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@Name("com.dinstone.launcher.ControlCommand")
+@Label("Launcher Control Command")
+@Category("Launcher")
+@Description("A command handled by the control listener")
+@StackTrace(false)
+public class ControlCommandEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Reply")
+    @Description("The first line of the reply")
+    String reply;
+
+}
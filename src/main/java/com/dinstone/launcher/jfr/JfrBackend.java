@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+
+import com.dinstone.launcher.FlightRecording;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * The {@link FlightRecording} backend of a JVM with the flight recorder, loaded only when <code>jdk.jfr</code> is
+ * there.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+public class JfrBackend implements FlightRecording.Backend {
+
+    private Recording recording;
+
+    public JfrBackend() {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("the flight recorder is not available");
+        }
+    }
+
+    @Override
+    public Object begin(String phase, String application) {
+        // begun even if it's not enabled yet, the recording may start before the phase ends
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.application = application == null ? "" : application;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Object beginCommand(String command) {
+        ControlCommandEvent event = new ControlCommandEvent();
+        event.command = command;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void end(Object event, String reply) {
+        if (event instanceof ControlCommandEvent) {
+            int newLine = reply == null ? -1 : reply.indexOf('\n');
+            ((ControlCommandEvent) event).reply = newLine < 0 ? reply : reply.substring(0, newLine);
+        }
+        ((Event) event).commit();
+    }
+
+    @Override
+    public synchronized void start(String settings, long maxBytes, long maxAgeMillis) throws IOException {
+        if (recording != null) {
+            return;
+        }
+        Configuration configuration;
+        try {
+            configuration = settings.endsWith(".jfc") ? Configuration.create(Paths.get(settings))
+                    : Configuration.getConfiguration(settings);
+        } catch (ParseException e) {
+            throw new IOException("invalid flight recorder settings " + settings, e);
+        }
+
+        Recording continuous = new Recording(configuration);
+        continuous.setName("launcher");
+        continuous.setToDisk(true);
+        continuous.setMaxSize(maxBytes);
+        continuous.setMaxAge(Duration.ofMillis(maxAgeMillis));
+        continuous.enable(PhaseEvent.class);
+        continuous.enable(ControlCommandEvent.class);
+        continuous.start();
+        recording = continuous;
+    }
+
+    @Override
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    @Override
+    public synchronized void dump(File file) throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("no recording");
+        }
+        recording.dump(file.toPath());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+}
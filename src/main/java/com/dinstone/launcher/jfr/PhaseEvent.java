@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A phase of the launcher lifecycle, from its begin to its end.
+ *
+ * @author dinstone
+ * @version 2.5.0
+ */
+@Name("com.dinstone.launcher.Phase")
+@Label("Launcher Phase")
+@Category("Launcher")
+@Description("A phase of the launcher lifecycle")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Application")
+    @Description("The hosted application, empty for the launcher")
+    String application;
+
+}
@@ -2,10 +2,16 @@
 
 LAUNCHER_HOME=$(cd `dirname $0`; pwd)
 
-#java -server -Xss256k -Xms4g -Xmx4g -Xmn1g -XX:PermSize=128m -XX:MaxPermSize=256m -Djava.net.preferIPv4Stack=true -XX:+DisableExplicitGC -XX:+HeapDumpOnOutOfMemoryError -XX:HeapDumpPath=/tmp/jvm.hprof -XX:+PrintClassHistogram -Xloggc:/tmp/gc.log -XX:+PrintGCDetails -XX:+PrintGCTimeStamps -XX:+PrintHeapAtGC -cp bin/bootstrap.jar com.dinstone.launcher.Launcher start > /dev/null  2>&1 &
+#java -server -Xss256k -Xms4g -Xmx4g -XX:MaxMetaspaceSize=256m -Djava.net.preferIPv4Stack=true -XX:+DisableExplicitGC -XX:+HeapDumpOnOutOfMemoryError -XX:HeapDumpPath=/tmp/jvm.hprof -XX:+PrintClassHistogram -Xloggc:/tmp/gc.log -XX:+PrintGCDetails -XX:+PrintGCTimeStamps -XX:+PrintHeapAtGC -cp bin/bootstrap.jar com.dinstone.launcher.Launcher start > /dev/null  2>&1 &
 #JAVA_GC="-XX:+DisableExplicitGC -XX:+HeapDumpOnOutOfMemoryError -XX:HeapDumpPath=/tmp/jvm.hprof -XX:+PrintClassHistogram -Xloggc:/tmp/gc.log -XX:+PrintGCDetails -XX:+PrintGCTimeStamps -XX:+PrintHeapAtGC"
 
-JAVA_OPTS="-server -Xss256k -Xmn500m -Xms1g -Xmx1g -XX:PermSize=64m -XX:MaxPermSize=64m -XX:+UseConcMarkSweepGC -Djava.net.preferIPv4Stack=true -Dfile.encoding=UTF-8"
+JAVA_OPTS="-server -Xss256k -Xms1g -Xmx1g -XX:MaxMetaspaceSize=256m -XX:+UseG1GC -Djava.net.preferIPv4Stack=true -Dfile.encoding=UTF-8"
+
+# with launcher.jvm.resolve=true the launcher relaunches itself with the heap, GC, metaspace, stack and processor
+# options resolved from the container limits, this JVM only waits for that one
+if grep -q '^ *launcher.jvm.resolve *= *true' "$LAUNCHER_HOME/config/launcher.properties" 2>/dev/null; then
+    JAVA_OPTS="-Xms16m -Xmx64m -XX:+UseSerialGC -Djava.net.preferIPv4Stack=true -Dfile.encoding=UTF-8"
+fi
 
 #JMX_OPTS="-Djava.rmi.server.hostname=watchserver -Dcom.sun.management.jmxremote.port=1099 -Dcom.sun.management.jmxremote.ssl=false -Dcom.sun.management.jmxremote.authenticate=false"
 #JPDA_OPTS="-agentlib:jdwp=transport=dt_socket,address=8888,server=y,suspend=y"
@@ -16,4 +22,29 @@ CLASSPATH="$LAUNCHER_HOME/bin/bootstrap.jar"
 
 LAUNCHER_OUT="$LAUNCHER_HOME/logs/launcher.out"
 
-nohup java $JAVA_OPTS $JMX_OPTS $JPDA_OPTS $LOGGING_CONFIG -Dlauncher.home=$LAUNCHER_HOME -classpath $CLASSPATH com.dinstone.launcher.Launcher start > $LAUNCHER_OUT 2>&1 &
\ No newline at end of file
+# 'sh start.sh dump-cds' writes the class data sharing archive cds/app.jsa
+if [ "$1" = "dump-cds" ]; then
+    java $JAVA_OPTS $LOGGING_CONFIG -Dlauncher.home=$LAUNCHER_HOME -classpath $CLASSPATH com.dinstone.launcher.Launcher dump-cds
+    exit $?
+fi
+
+# 'sh start.sh supervise' runs the workers under a supervisor that restarts them
+LAUNCHER_COMMAND=start
+if [ "$1" = "supervise" ]; then
+    LAUNCHER_COMMAND=supervise
+fi
+
+# use the class data sharing archive while the lib jars are unchanged
+CDS_ARCHIVE="$LAUNCHER_HOME/cds/app.jsa"
+CDS_JARS="$LAUNCHER_HOME/cds/app.jars"
+if [ -f "$CDS_ARCHIVE" ] && [ -f "$CDS_JARS" ]; then
+    # the first line is the lib directory of the application home, the jar names follow
+    CDS_LIB=`sed -n '1s/^# //p' "$CDS_JARS"`
+    CURRENT_JARS=`cd "$CDS_LIB" 2>/dev/null && LC_ALL=C ls *.jar 2>/dev/null`
+    NEWER_JARS=`find "$CDS_LIB" -name '*.jar' -newer "$CDS_ARCHIVE" 2>/dev/null`
+    if [ -n "$CDS_LIB" ] && [ "$CURRENT_JARS" = "`sed 1d "$CDS_JARS"`" ] && [ -z "$NEWER_JARS" ]; then
+        CDS_OPTS="-XX:SharedArchiveFile=$CDS_ARCHIVE -Xshare:auto"
+    fi
+fi
+
+nohup java $JAVA_OPTS $CDS_OPTS $JMX_OPTS $JPDA_OPTS $LOGGING_CONFIG -Dlauncher.home=$LAUNCHER_HOME -classpath $CLASSPATH com.dinstone.launcher.Launcher $LAUNCHER_COMMAND > $LAUNCHER_OUT 2>&1 &
\ No newline at end of file
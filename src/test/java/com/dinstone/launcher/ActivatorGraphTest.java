@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActivatorGraphTest {
+
+    static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+
+    /** released once both independent activators are starting */
+    static CountDownLatch parallel;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        EVENTS.clear();
+        parallel = new CountDownLatch(2);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStartAndStopOrder() throws Exception {
+        ActivatorGraph graph = new ActivatorGraph(Arrays.asList(new Server(), new Cache(), new Scheduler()));
+        assertEquals(Arrays.asList(Cache.class.getName(), Scheduler.class.getName(), Server.class.getName()),
+            graph.getNames());
+
+        // Cache and Scheduler only complete their start when both run concurrently
+        graph.start(executor).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals("start Server", EVENTS.get(2));
+
+        EVENTS.clear();
+        assertTrue(graph.stop(executor));
+        assertEquals("stop Server", EVENTS.get(0));
+        assertEquals(3, EVENTS.size());
+    }
+
+    @Test
+    public void testStopWithoutExecutor() throws Exception {
+        ActivatorGraph graph = new ActivatorGraph(Arrays.asList(new Server(), new Cache(), new Scheduler()));
+        graph.start(executor).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        // on the calling thread, in reverse dependency order
+        EVENTS.clear();
+        assertTrue(graph.stop(null));
+        assertEquals(Arrays.asList("stop Server", "stop Scheduler", "stop Cache"), EVENTS);
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+        try {
+            new ActivatorGraph(Arrays.asList(new CycleA(), new CycleB()));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cycle"));
+        }
+    }
+
+    @Test
+    public void testUnknownDependency() throws Exception {
+        try {
+            new ActivatorGraph(Arrays.asList(new Server()));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("unknown activator"));
+        }
+    }
+
+    public static class Base {
+
+        public void start() throws Exception {
+            EVENTS.add("start " + getClass().getSimpleName());
+        }
+
+        public void stop() {
+            EVENTS.add("stop " + getClass().getSimpleName());
+        }
+    }
+
+    public static class Cache extends Base {
+
+        @Override
+        public void start() throws Exception {
+            parallel.countDown();
+            assertTrue(parallel.await(5, TimeUnit.SECONDS));
+            super.start();
+        }
+    }
+
+    public static class Scheduler extends Cache {
+    }
+
+    @DependsOn({ "com.dinstone.launcher.ActivatorGraphTest$Cache",
+            "com.dinstone.launcher.ActivatorGraphTest$Scheduler" })
+    public static class Server extends Base {
+    }
+
+    @DependsOn("com.dinstone.launcher.ActivatorGraphTest$CycleB")
+    public static class CycleA extends Base {
+    }
+
+    @DependsOn("com.dinstone.launcher.ActivatorGraphTest$CycleA")
+    public static class CycleB extends Base {
+    }
+
+}
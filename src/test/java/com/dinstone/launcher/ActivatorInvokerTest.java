@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.junit.Test;
+
+public class ActivatorInvokerTest {
+
+    @Test
+    public void testDuckTypedActivator() throws Exception {
+        DuckActivator activator = new DuckActivator();
+        ActivatorInvoker invoker = new ActivatorInvoker(activator);
+        assertFalse(invoker.isAsync());
+
+        invoker.init(null);
+        assertTrue(invoker.start().toCompletableFuture().isDone());
+        invoker.stop();
+        assertEquals("init,start,stop", activator.calls.toString());
+    }
+
+    @Test
+    public void testAsyncActivator() throws Exception {
+        TypedActivator activator = new TypedActivator();
+        ActivatorInvoker invoker = new ActivatorInvoker(activator);
+        assertTrue(invoker.isAsync());
+
+        LauncherContext context = new DefaultLauncherContext(null, null);
+        invoker.init(context);
+        assertSame(context, activator.context);
+
+        CompletionStage<Void> started = invoker.start();
+        assertFalse(started.toCompletableFuture().isDone());
+        activator.ready.complete(null);
+        assertTrue(started.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testStartFailure() throws Exception {
+        ActivatorInvoker invoker = new ActivatorInvoker(new FailingActivator());
+        try {
+            invoker.start();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    public static class DuckActivator {
+
+        final StringBuilder calls = new StringBuilder();
+
+        public void init(LauncherContext context) {
+            calls.append("init");
+        }
+
+        public void start() {
+            calls.append(",start");
+        }
+
+        public void stop() {
+            calls.append(",stop");
+        }
+    }
+
+    public static class FailingActivator {
+
+        public void start() {
+            throw new IllegalStateException("failed");
+        }
+
+        public void stop() {
+        }
+    }
+
+    public static class TypedActivator implements AsyncActivator {
+
+        final CompletableFuture<Void> ready = new CompletableFuture<Void>();
+
+        LauncherContext context;
+
+        @Override
+        public void init(LauncherContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void start() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletionStage<Void> startAsync() {
+            return ready;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+}
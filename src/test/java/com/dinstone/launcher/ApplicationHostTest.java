@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ApplicationHostTest {
+
+    @Test
+    public void testApplicationConfiguration() throws Exception {
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+        Configuration config = new Configuration();
+        config.setProperty("apps.billing.application.activator", "demo.BillingActivator");
+        config.setProperty("lifecycle.warmup.threads", "2");
+
+        Configuration billing = config.forApplication("billing");
+        assertEquals("demo.BillingActivator", billing.getProperty("application.activator"));
+        assertEquals("2", billing.getProperty("lifecycle.warmup.threads"));
+        assertEquals(new File(new File(config.getLauncherHome(), "apps"), "billing").getPath(),
+            billing.getApplicationHome());
+
+        // the application properties of the launcher are not inherited
+        assertNull(config.forApplication("orders").getProperty("application.activator"));
+    }
+
+    @Test
+    public void testStartAndStop() throws Exception {
+        File home = File.createTempFile("host", "");
+        home.delete();
+        home.mkdirs();
+        String launcherHome = System.getProperty("launcher.home");
+        System.setProperty("launcher.home", home.getPath());
+        try {
+            System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+            Configuration config = new Configuration();
+            config.setProperty("apps.a.application.activator", CountingActivator.class.getName());
+            config.setProperty("apps.a.application.classpath", "");
+            ApplicationHost host = new ApplicationHost(config, Arrays.asList("a"), getClass().getClassLoader());
+
+            assertEquals(0, host.startAll());
+            assertEquals(1, CountingActivator.starts.get());
+            assertTrue(host.report().contains("app.a.state=RUNNING"));
+            assertTrue(new File(home, "logs/a/ready").exists());
+            assertEquals(ApplicationHost.MESSAGE_RUNNING, host.start("a"));
+
+            assertEquals(ApplicationHost.MESSAGE_STOPPED, host.stop("a"));
+            assertEquals(1, CountingActivator.stops.get());
+            assertEquals(ApplicationHost.MESSAGE_NOT_RUNNING, host.stop("a"));
+
+            // a stopped application is started again by a new lifecycle
+            assertEquals(ApplicationHost.MESSAGE_STARTED, host.start("a"));
+            assertEquals(2, CountingActivator.starts.get());
+            host.stopAll();
+            assertEquals(2, CountingActivator.stops.get());
+
+            assertEquals(ApplicationHost.MESSAGE_UNKNOWN, host.start("b"));
+        } finally {
+            if (launcherHome == null) {
+                System.clearProperty("launcher.home");
+            } else {
+                System.setProperty("launcher.home", launcherHome);
+            }
+            delete(home);
+        }
+    }
+
+    @Test
+    public void testShutdownOverrunDoesNotHalt() throws Exception {
+        File home = File.createTempFile("host", "");
+        home.delete();
+        home.mkdirs();
+        String launcherHome = System.getProperty("launcher.home");
+        System.setProperty("launcher.home", home.getPath());
+        try {
+            System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+            Configuration config = new Configuration();
+            config.setProperty("apps.a.application.activator", SlowStopActivator.class.getName());
+            config.setProperty("apps.a.application.classpath", "");
+            config.setProperty("apps.a.lifecycle.shutdown.timeout", "1");
+            ApplicationHost host = new ApplicationHost(config, Arrays.asList("a"), getClass().getClassLoader());
+            assertEquals(0, host.startAll());
+
+            // the stop overruns the budget of the application, the shared JVM keeps running
+            assertEquals(ApplicationHost.MESSAGE_STOPPED, host.stop("a"));
+            Properties report = ShutdownWatchdog.readReport(new File(home, "logs/a/shutdown.properties"), 0);
+            assertEquals(ShutdownWatchdog.STATUS_COMPLETED, report.getProperty("shutdown.status"));
+            assertEquals("1000", report.getProperty("shutdown.budget.ms"));
+        } finally {
+            if (launcherHome == null) {
+                System.clearProperty("launcher.home");
+            } else {
+                System.setProperty("launcher.home", launcherHome);
+            }
+            delete(home);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static class CountingActivator {
+
+        static final AtomicInteger starts = new AtomicInteger();
+
+        static final AtomicInteger stops = new AtomicInteger();
+
+        public void start() {
+            starts.incrementAndGet();
+        }
+
+        public void stop() {
+            stops.incrementAndGet();
+        }
+    }
+
+    public static class SlowStopActivator {
+
+        public void start() {
+        }
+
+        public void stop() throws InterruptedException {
+            Thread.sleep(2000);
+        }
+    }
+
+}
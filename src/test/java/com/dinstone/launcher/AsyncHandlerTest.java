@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Test;
+
+public class AsyncHandlerTest {
+
+    @Test
+    public void testRecordsArePublishedInOrder() throws Exception {
+        CollectingHandler target = new CollectingHandler(null);
+        AsyncHandler handler = new AsyncHandler(new Handler[] { target }, 16, AsyncHandler.Overflow.BLOCK,
+            Level.WARNING);
+        for (int i = 0; i < 1000; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        handler.flush();
+        assertEquals(1000, target.messages().size());
+        assertTrue(target.flushes > 0);
+
+        handler.publish(new LogRecord(Level.INFO, "last"));
+        handler.close();
+        List<String> messages = target.messages();
+        assertEquals(1001, messages.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("record " + i, messages.get(i));
+        }
+        assertEquals("last", messages.get(1000));
+        assertTrue(target.closed);
+        assertEquals(0, handler.getDroppedCount());
+
+        // closed
+        handler.publish(new LogRecord(Level.INFO, "ignored"));
+        assertEquals(1001, target.messages().size());
+    }
+
+    @Test
+    public void testOverflowPolicies() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingHandler target = new CollectingHandler(release);
+        AsyncHandler oldest = new AsyncHandler(new Handler[] { target }, 4, AsyncHandler.Overflow.DROP_OLDEST,
+            Level.WARNING);
+        // the writer takes the first record and waits in the target
+        oldest.publish(new LogRecord(Level.INFO, "taken"));
+        target.entered.await();
+        for (int i = 0; i < 10; i++) {
+            oldest.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        assertEquals(6, oldest.getDroppedCount());
+        assertEquals(4, oldest.getQueuedCount());
+        release.countDown();
+        oldest.close();
+
+        List<String> messages = target.messages();
+        assertEquals("taken", messages.get(0));
+        assertTrue(messages.get(1), messages.get(1).contains("6 records dropped"));
+        assertEquals("record 6", messages.get(2));
+        assertEquals("record 9", messages.get(5));
+
+        release = new CountDownLatch(1);
+        target = new CollectingHandler(release);
+        AsyncHandler belowLevel = new AsyncHandler(new Handler[] { target }, 2,
+            AsyncHandler.Overflow.DROP_BELOW_LEVEL, Level.WARNING);
+        belowLevel.publish(new LogRecord(Level.INFO, "taken"));
+        target.entered.await();
+        belowLevel.publish(new LogRecord(Level.INFO, "queued 1"));
+        belowLevel.publish(new LogRecord(Level.INFO, "queued 2"));
+        belowLevel.publish(new LogRecord(Level.INFO, "dropped"));
+        assertEquals(1, belowLevel.getDroppedCount());
+        release.countDown();
+        // waits for room instead of being dropped
+        belowLevel.publish(new LogRecord(Level.SEVERE, "kept"));
+        belowLevel.close();
+
+        messages = target.messages();
+        assertEquals(5, messages.size());
+        assertTrue(messages.contains("kept"));
+        assertTrue(!messages.contains("dropped"));
+    }
+
+    private static class CollectingHandler extends Handler {
+
+        private final List<String> messages = new ArrayList<String>();
+
+        private final CountDownLatch release;
+
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        volatile int flushes;
+
+        volatile boolean closed;
+
+        CollectingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            entered.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (messages) {
+                messages.add(record.getMessage());
+            }
+        }
+
+        List<String> messages() {
+            synchronized (messages) {
+                return new ArrayList<String>(messages);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
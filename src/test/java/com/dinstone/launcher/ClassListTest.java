@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassListTest {
+
+    private File classList;
+
+    private URL[] classPath;
+
+    @Before
+    public void setUp() throws Exception {
+        classList = File.createTempFile("classes", ".lst");
+        classList.delete();
+        // the launcher classes, loaded in isolation from the bootstrap loader
+        classPath = new URL[] { StartupReport.class.getProtectionDomain().getCodeSource().getLocation() };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        classList.delete();
+    }
+
+    @Test
+    public void testRecordAndReplay() throws Exception {
+        ClassListRecorder recorder = new ClassListRecorder(classList, 60000);
+        ApplicationClassLoader training = new ApplicationClassLoader(classPath, null);
+        try {
+            training.setRecorder(recorder);
+            recorder.start();
+            training.loadClass(StartupReport.class.getName());
+            recorder.finish();
+            // nothing is recorded after the training run
+            training.loadClass(NamedThreadFactory.class.getName());
+        } finally {
+            training.close();
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(classList));
+        try {
+            assertTrue(reader.readLine().startsWith("#"));
+            assertEquals(StartupReport.class.getName(), reader.readLine());
+            assertEquals(null, reader.readLine());
+        } finally {
+            reader.close();
+        }
+
+        ApplicationClassLoader replay = new ApplicationClassLoader(classPath, null);
+        try {
+            ClassPreloader preloader = new ClassPreloader(classList, replay, 2);
+            assertTrue(preloader.start());
+            preloader.await();
+            assertEquals(1, preloader.getLoadedCount());
+            assertEquals(1, replay.getLoadedClassCount());
+        } finally {
+            replay.close();
+        }
+    }
+
+    @Test
+    public void testThreadsReleaseTheClassLoader() throws Exception {
+        Thread current = Thread.currentThread();
+        ClassLoader contextClassLoader = current.getContextClassLoader();
+        URLClassLoader application = new URLClassLoader(classPath, null);
+        current.setContextClassLoader(application);
+        try {
+            ClassListRecorder recorder = new ClassListRecorder(classList, 60000);
+            recorder.start();
+            Thread timer = thread("classlist-recorder");
+            assertTrue(timer.getContextClassLoader() != application);
+            // the timer ends with the recording instead of sleeping out the duration
+            recorder.finish();
+            timer.join(5000);
+            assertFalse(timer.isAlive());
+
+            int count = 100000;
+            Writer writer = new FileWriter(classList);
+            try {
+                for (int i = 0; i < count; i++) {
+                    writer.write("com.dinstone.launcher.Missing" + i + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+            ClassPreloader preloader = new ClassPreloader(classList, application, 1);
+            assertTrue(preloader.start());
+            Thread worker = thread("class-preload-1");
+            preloader.stop();
+            preloader.await();
+            assertTrue(worker == null || worker.getContextClassLoader() != application);
+            assertTrue(preloader.getFailedCount() < count);
+        } finally {
+            current.setContextClassLoader(contextClassLoader);
+            application.close();
+        }
+    }
+
+    @Test
+    public void testReplayWithoutClassList() throws Exception {
+        assertFalse(new ClassPreloader(classList, getClass().getClassLoader(), 2).start());
+    }
+
+    private static Thread thread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+}
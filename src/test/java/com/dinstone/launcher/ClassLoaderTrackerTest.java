@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class ClassLoaderTrackerTest {
+
+    @Test
+    public void testReclaimed() throws Exception {
+        ClassLoaderTracker tracker = new ClassLoaderTracker(10000);
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        tracker.track(classLoader, "reclaimed");
+
+        ClassLoaderTracker.Tracked released = tracker.release(classLoader);
+        classLoader = null;
+        assertTrue(tracker.verify(released));
+        assertEquals(ClassLoaderTracker.STATE_RECLAIMED, released.getState());
+        assertTrue(tracker.report().contains("classloader.reclaimed=reclaimed"));
+    }
+
+    @Test
+    public void testLeakedByThread() throws Exception {
+        ClassLoaderTracker tracker = new ClassLoaderTracker(500);
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        tracker.track(classLoader, "leaked");
+
+        final CountDownLatch stop = new CountDownLatch(1);
+        Thread thread = new Thread("leaking-thread") {
+
+            @Override
+            public void run() {
+                try {
+                    stop.await();
+                } catch (InterruptedException e) {
+                    // stop
+                }
+            }
+        };
+        thread.setContextClassLoader(classLoader);
+        thread.start();
+        try {
+            ClassLoaderTracker.Tracked released = tracker.release(classLoader);
+            assertFalse(tracker.verify(released));
+            assertEquals(ClassLoaderTracker.STATE_LEAKED, released.getState());
+
+            List<String> culprits = ClassLoaderTracker.findCulprits(classLoader);
+            assertTrue(culprits.toString(), culprits.contains("thread 'leaking-thread' (context class loader)"));
+        } finally {
+            stop.countDown();
+            thread.join();
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClasspathIndexTest {
+
+    private static final String REPORT_CLASS = "com/dinstone/launcher/StartupReport.class";
+
+    private File lib;
+
+    private List<File> jars;
+
+    @Before
+    public void setUp() throws Exception {
+        lib = File.createTempFile("classpath-index", "");
+        lib.delete();
+        lib.mkdirs();
+
+        File first = new File(lib, "first.jar");
+        writeJar(first, REPORT_CLASS, "config/app.txt");
+        File second = new File(lib, "second.jar");
+        writeJar(second, "config/app.txt", "META-INF/services/application.activator");
+        jars = Arrays.asList(first, second);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(lib);
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        ClasspathIndex index = ClasspathIndex.build(jars);
+
+        assertTrue(Arrays.equals(new int[] { 0 }, index.lookup("com/dinstone/launcher/Launcher.class")));
+        assertTrue(Arrays.equals(new int[] { 0, 1 }, index.lookup("config/app.txt")));
+        assertTrue(Arrays.equals(new int[] { 1 }, index.lookup("META-INF/services/application.activator")));
+        assertEquals(0, index.lookup("org/junit/Test.class").length);
+        assertEquals(0, index.lookup("config/missing.txt").length);
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File indexFile = new File(lib, "lib.index");
+        ClasspathIndex.build(jars).store(indexFile);
+
+        ClasspathIndex loaded = ClasspathIndex.load(indexFile, jars);
+        assertNotNull(loaded);
+        assertTrue(Arrays.equals(new int[] { 0, 1 }, loaded.lookup("config/app.txt")));
+
+        // a changed jar invalidates the index
+        writeJar(jars.get(1), "config/app.txt");
+        jars.get(1).setLastModified(jars.get(1).lastModified() + 2000);
+        assertNull(ClasspathIndex.load(indexFile, jars));
+
+        // so does a different jar list
+        assertNull(ClasspathIndex.load(indexFile, Collections.singletonList(jars.get(0))));
+    }
+
+    @Test
+    public void testClassLoader() throws Exception {
+        URL[] urls = new URL[] { jars.get(0).toURI().toURL(), jars.get(1).toURI().toURL() };
+        ApplicationClassLoader loader = new ApplicationClassLoader(urls, new URL[0], ClasspathIndex.build(jars), null);
+        try {
+            Class<?> reportClass = loader.loadClass("com.dinstone.launcher.StartupReport");
+            assertSame(loader, reportClass.getClassLoader());
+            assertEquals(1, loader.getLoadedClassCount());
+
+            List<URL> resources = Collections.list(loader.getResources("config/app.txt"));
+            assertEquals(2, resources.size());
+            assertTrue(resources.get(0).toString().endsWith("first.jar!/config/app.txt"));
+            InputStream in = resources.get(1).openStream();
+            in.close();
+
+            assertNull(loader.getResource("config/missing.txt"));
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    public void testDelegation() throws Exception {
+        File jar = new File(lib, "config.jar");
+        writeJar(jar, "config/launcher.properties");
+        URL[] urls = new URL[] { jar.toURI().toURL() };
+        ClasspathIndex index = ClasspathIndex.build(Collections.singletonList(jar));
+        ClassLoader parent = getClass().getClassLoader();
+
+        URL[] none = new URL[0];
+        ApplicationClassLoader parentFirst = new ApplicationClassLoader(urls, none, index, null, parent, false);
+        ApplicationClassLoader childFirst = new ApplicationClassLoader(urls, none, index, null, parent, true);
+        try {
+            assertEquals("file", parentFirst.getResource("config/launcher.properties").getProtocol());
+            assertEquals("jar", childFirst.getResource("config/launcher.properties").getProtocol());
+
+            // launcher classes are always shared with the parent
+            assertSame(StartupReport.class, childFirst.loadClass(StartupReport.class.getName()));
+            assertEquals(0, childFirst.getLoadedClassCount());
+        } finally {
+            parentFirst.close();
+            childFirst.close();
+        }
+    }
+
+    @Test
+    public void testClassPathOrder() throws Exception {
+        File patches = new File(lib, "patches");
+        new File(patches, "config").mkdirs();
+        new File(patches, "com/dinstone/launcher").mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(patches, "config/app.txt"));
+        out.close();
+        out = new FileOutputStream(new File(patches, REPORT_CLASS));
+        try {
+            out.write(readClass(REPORT_CLASS));
+        } finally {
+            out.close();
+        }
+
+        URL first = jars.get(0).toURI().toURL();
+        URL second = jars.get(1).toURI().toURL();
+        URL dir = patches.toURI().toURL();
+        ClasspathIndex index = ClasspathIndex.build(jars);
+
+        // a directory behind a jar doesn't shadow it
+        URL[] urls = new URL[] { first, dir, second };
+        ApplicationClassLoader loader = new ApplicationClassLoader(urls, new URL[] { dir }, index, null);
+        try {
+            List<URL> resources = Collections.list(loader.getResources("config/app.txt"));
+            assertEquals(3, resources.size());
+            assertTrue(resources.get(0).toString().endsWith("first.jar!/config/app.txt"));
+            assertEquals("file", resources.get(1).getProtocol());
+            assertTrue(resources.get(2).toString().endsWith("second.jar!/config/app.txt"));
+            assertEquals(resources.get(0), loader.getResource("config/app.txt"));
+
+            Class<?> reportClass = loader.loadClass("com.dinstone.launcher.StartupReport");
+            assertEquals(first, reportClass.getProtectionDomain().getCodeSource().getLocation());
+        } finally {
+            loader.close();
+        }
+
+        // in front of the jars it does
+        urls = new URL[] { dir, first, second };
+        loader = new ApplicationClassLoader(urls, new URL[] { dir }, index, null);
+        try {
+            assertEquals("file", loader.getResource("config/app.txt").getProtocol());
+            Class<?> reportClass = loader.loadClass("com.dinstone.launcher.StartupReport");
+            assertEquals(dir, reportClass.getProtectionDomain().getCodeSource().getLocation());
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testClassLoaderMiss() throws Exception {
+        URL[] urls = new URL[] { jars.get(0).toURI().toURL() };
+        List<File> first = jars.subList(0, 1);
+        ApplicationClassLoader loader = new ApplicationClassLoader(urls, new URL[0], ClasspathIndex.build(first), null);
+        try {
+            loader.loadClass("com.dinstone.launcher.Missing");
+        } finally {
+            loader.close();
+        }
+    }
+
+    private void writeJar(File jar, String... entries) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                if (entry.endsWith(".class")) {
+                    out.write(readClass(entry));
+                } else {
+                    out.write(entry.getBytes("UTF-8"));
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private byte[] readClass(String entry) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(entry);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClasspathScannerTest {
+
+    private File home;
+
+    private ExecutorService executor;
+
+    private ClasspathScanner scanner;
+
+    @Before
+    public void setUp() throws Exception {
+        home = File.createTempFile("classpath-scanner", "");
+        home.delete();
+        new File(home, "config").mkdirs();
+        new File(home, "lib").mkdirs();
+        new File(home, "ext").mkdirs();
+
+        executor = Executors.newFixedThreadPool(4);
+        scanner = new ClasspathScanner(executor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        delete(home);
+    }
+
+    @Test
+    public void testResolveKeepsOrder() throws Exception {
+        writeJar(new File(home, "lib/b.jar"));
+        writeJar(new File(home, "lib/a.JAR"));
+        writeJar(new File(home, "ext/z.jar"));
+        new File(home, "lib/readme.txt").createNewFile();
+
+        String classPath = "${application.home}/config,${application.home}/ext/z.jar,${application.home}/lib/*.jar,"
+                + "${application.home}/missing";
+        List<ClasspathScanner.Location> locations = scanner.resolve(home.getPath(), classPath);
+
+        assertEquals(4, locations.size());
+        assertNull(locations.get(0).getJar());
+        assertEquals("z.jar", locations.get(1).getJar().getName());
+        assertEquals("a.JAR", locations.get(2).getJar().getName());
+        assertEquals("b.jar", locations.get(3).getJar().getName());
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        List<File> jars = new ArrayList<File>();
+        for (int i = 0; i < 8; i++) {
+            File jar = new File(home, "lib/" + i + ".jar");
+            writeJar(jar);
+            jars.add(jar);
+        }
+
+        List<JarFile> jarFiles = scanner.open(jars);
+        assertEquals(jars.size(), jarFiles.size());
+        for (int i = 0; i < jars.size(); i++) {
+            assertEquals(jars.get(i).getPath(), jarFiles.get(i).getName());
+            assertNotNull(jarFiles.get(i).getJarEntry("entry.txt"));
+            jarFiles.get(i).close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpenCorruptJar() throws Exception {
+        File good = new File(home, "lib/good.jar");
+        writeJar(good);
+        File corrupt = new File(home, "lib/corrupt.jar");
+        FileOutputStream out = new FileOutputStream(corrupt);
+        out.write("not a zip file".getBytes("UTF-8"));
+        out.close();
+
+        List<File> jars = new ArrayList<File>();
+        jars.add(good);
+        jars.add(corrupt);
+        scanner.open(jars);
+    }
+
+    private void writeJar(File jar) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("entry.txt"));
+            out.write(jar.getName().getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
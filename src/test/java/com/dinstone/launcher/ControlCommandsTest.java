@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class ControlCommandsTest {
+
+    @Test
+    public void testCommands() throws Exception {
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+        ControlCommands commands = new ControlCommands(new LifecycleManager(new Configuration()));
+
+        Properties status = new Properties();
+        status.load(new StringReader(commands.handle(ControlCommands.STATUS)));
+        assertEquals("NEW", status.getProperty("state"));
+        assertEquals("-1", status.getProperty("startup.ms"));
+
+        Properties metrics = new Properties();
+        metrics.load(new StringReader(commands.handle(ControlCommands.METRICS)));
+        assertTrue(Long.parseLong(metrics.getProperty("heap.used")) > 0);
+
+        assertTrue(commands.handle(ControlCommands.GC_STATS).contains(".count="));
+        assertTrue(commands.handle(ControlCommands.THREADDUMP).contains("testCommands"));
+        assertTrue(commands.handle(ControlCommands.STARTUP).startsWith("#startup report"));
+        assertNull(commands.handle("UNKNOWN"));
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals("ps.old.gen", ControlCommands.key("PS Old Gen"));
+        assertEquals("g1.young.generation", ControlCommands.key("G1 Young Generation"));
+        assertEquals("codeheap.non.nmethods", ControlCommands.key("CodeHeap 'non-nmethods'"));
+    }
+
+}
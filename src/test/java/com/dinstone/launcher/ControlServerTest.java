@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ControlServerTest {
+
+    private ServerSocketChannel channel;
+
+    private ControlServer server;
+
+    private Thread serving;
+
+    private volatile boolean aborted;
+
+    @Before
+    public void setUp() throws Exception {
+        channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress(InetAddress.getByName("localhost"), 0), 50);
+        server = new ControlServer(channel, "SHUTDOWN", new ControlServer.Handler() {
+
+            @Override
+            public String handle(String command) throws Exception {
+                if (command.equals("SLOW")) {
+                    Thread.sleep(1000);
+                }
+                return command.equals("SHUTDOWN") ? "STOPPED" : "INVALID";
+            }
+        }, 1, 5000);
+
+        serving = new Thread() {
+
+            @Override
+            public void run() {
+                aborted = server.serve();
+            }
+        };
+        serving.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        serving.join(1000);
+    }
+
+    @Test
+    public void testStalledClientsDontDelayShutdown() throws Exception {
+        // a client that never sends its command and one whose command keeps the only worker busy
+        Socket stalled = connect();
+        Socket slow = connect();
+        send(slow, "SLOW\n");
+
+        long begin = System.currentTimeMillis();
+        Socket shutdown = connect();
+        send(shutdown, "SHUTDOWN\n");
+        assertEquals("STOPPED", receiveFrame(shutdown));
+        assertTrue(System.currentTimeMillis() - begin < 1000);
+
+        serving.join(2000);
+        assertFalse(serving.isAlive());
+        assertFalse(aborted);
+
+        stalled.close();
+        slow.close();
+    }
+
+    @Test
+    public void testLegacyAndInvalidCommands() throws Exception {
+        Socket invalid = connect();
+        send(invalid, "STATUS\n");
+        assertEquals("INVALID", receiveFrame(invalid));
+
+        // non-ASCII bytes don't terminate the command
+        Socket utf8 = connect();
+        send(utf8, "STATUS\u00e9\n");
+        assertEquals("INVALID", receiveFrame(utf8));
+
+        // the bare command, without terminator, as sent by earlier clients
+        Socket legacy = connect();
+        send(legacy, "SHUTDOWN");
+        assertEquals("STOPPED", receive(legacy));
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        server.stop();
+        serving.join(2000);
+        assertFalse(serving.isAlive());
+        assertTrue(aborted);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testUnixDomainSocket() throws Exception {
+        Assume.assumeTrue(UnixSockets.isSupported());
+
+        File file = File.createTempFile("control", ".sock");
+        // a stale socket file is replaced
+        assertTrue(file.exists());
+
+        final ControlServer unix = new ControlServer(UnixSockets.bind(file, 50), "SHUTDOWN", new ControlServer.Handler() {
+
+            @Override
+            public String handle(String command) {
+                return command.equals("SHUTDOWN") ? "STOPPED" : "INVALID";
+            }
+        }, 1, 5000);
+        try {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    unix.serve();
+                }
+            };
+            thread.start();
+
+            ControlClient client = new ControlClient(UnixSockets.address(file), 5000);
+            assertEquals("INVALID", client.request("STATUS"));
+            assertEquals("STOPPED", client.requestRaw("SHUTDOWN"));
+            thread.join(2000);
+            assertFalse(thread.isAlive());
+        } finally {
+            unix.stop();
+            file.delete();
+        }
+    }
+
+    private Socket connect() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName("localhost"), channel.socket().getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private void send(Socket socket, String command) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(command.getBytes("UTF-8"));
+        out.flush();
+    }
+
+    private String receiveFrame(Socket socket) throws Exception {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] reply = new byte[in.readInt()];
+        in.readFully(reply);
+        assertEquals(-1, in.read());
+        socket.close();
+        return new String(reply, "UTF-8");
+    }
+
+    private String receive(Socket socket) throws Exception {
+        InputStream in = socket.getInputStream();
+        StringBuilder reply = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != -1) {
+            reply.append((char) ch);
+        }
+        socket.close();
+        return reply.toString();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlightRecordingTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(FlightRecording.isAvailable());
+        dir = File.createTempFile("flight", "");
+        dir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        FlightRecording.stop();
+        if (dir != null && dir.listFiles() != null) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testEventsAreDumped() throws Exception {
+        // begun before the recording started
+        Object init = FlightRecording.begin("test.init");
+        assertTrue(FlightRecording.start("default", 8 * 1024 * 1024, 60000));
+        assertTrue(FlightRecording.start("default", 8 * 1024 * 1024, 60000));
+        FlightRecording.end(init);
+
+        Object start = FlightRecording.begin("test.start", "billing");
+        Thread.sleep(10);
+        FlightRecording.end(start);
+        Object command = FlightRecording.beginCommand("STATUS");
+        FlightRecording.endCommand(command, "state=RUNNING\nready=true\n");
+
+        File dump = FlightRecording.dump(dir, "test");
+        assertNotNull(dump);
+        assertTrue(dump.getName().startsWith("flight-test-"));
+
+        Map<String, RecordedEvent> phases = new HashMap<String, RecordedEvent>();
+        RecordedEvent commandEvent = null;
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals("com.dinstone.launcher.Phase")) {
+                phases.put(event.getString("phase"), event);
+            } else if (name.equals("com.dinstone.launcher.ControlCommand")) {
+                commandEvent = event;
+            }
+        }
+        assertNotNull(phases.get("test.init"));
+        assertEquals("", phases.get("test.init").getString("application"));
+        assertEquals("billing", phases.get("test.start").getString("application"));
+        assertTrue(phases.get("test.start").getDuration().toMillis() >= 10);
+        assertNotNull(commandEvent);
+        assertEquals("STATUS", commandEvent.getString("command"));
+        assertEquals("state=RUNNING", commandEvent.getString("reply"));
+    }
+
+    @Test
+    public void testNoDumpWithoutRecording() throws Exception {
+        assertFalse(FlightRecording.isRecording());
+        assertNull(FlightRecording.dump(dir, "test"));
+        assertFalse(dir.exists());
+
+        assertFalse(FlightRecording.start("no-such-settings", 8 * 1024 * 1024, 60000));
+        assertFalse(FlightRecording.isRecording());
+    }
+
+}
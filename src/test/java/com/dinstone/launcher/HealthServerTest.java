@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HealthServerTest {
+
+    private HealthServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+        LifecycleManager lifecycle = new LifecycleManager(new Configuration());
+        server = new HealthServer(lifecycle, new InetSocketAddress("localhost", 0), 1);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testHealth() throws Exception {
+        // the activators are not started
+        assertEquals(200, get("/health/live").getResponseCode());
+        HttpURLConnection ready = get("/health/ready");
+        assertEquals(503, ready.getResponseCode());
+        assertTrue(read(ready.getErrorStream()).contains("state=NEW\nready=false\n"));
+    }
+
+    @Test
+    public void testPrometheusMetrics() throws Exception {
+        HttpURLConnection connection = get("/metrics");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+
+        String metrics = read(connection.getInputStream());
+        assertTrue(metrics.contains("# TYPE launcher_ready gauge\nlauncher_ready 0\n"));
+        assertTrue(metrics.contains("# TYPE jvm_gc_collections_total counter\n"));
+        assertTrue(metrics.contains("jvm_memory_used_bytes{area=\"heap\"} "));
+        assertTrue(metrics.contains("jvm_threads_current "));
+        assertTrue(metrics.contains("jvm_classes_loaded "));
+        for (String line : metrics.split("\n")) {
+            assertTrue(line, line.startsWith("# HELP ") || line.startsWith("# TYPE ")
+                    || line.matches("[a-z_]+(\\{[a-z]+=\"[^\"]*\"\\})? -?[0-9.E-]+"));
+        }
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+}
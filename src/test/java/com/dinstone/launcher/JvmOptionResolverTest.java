@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JvmOptionResolverTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private Configuration config;
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+        config = new Configuration();
+        root = File.createTempFile("cgroup", "");
+        root.delete();
+        root.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("launcher.config");
+        delete(root);
+    }
+
+    @Test
+    public void testCgroupV2() throws Exception {
+        write("cgroup.controllers", "cpu memory");
+        write("memory.max", String.valueOf(4096 * MB));
+        write("cpu.max", "150000 100000");
+
+        JvmOptionResolver resolver = new JvmOptionResolver(config, root);
+        assertEquals("cgroup v2", resolver.getSource());
+        assertTrue(resolver.getMemory() <= 4096 * MB);
+        assertTrue(resolver.getProcessors() <= 1.5);
+
+        if (resolver.getMemory() == 4096 * MB && resolver.getProcessors() == 1.5) {
+            List<String> options = resolver.resolve(1);
+            assertTrue(options.containsAll(Arrays.asList("-Xmx3072m", "-Xms3072m", "-Xss512k",
+                "-XX:MaxMetaspaceSize=256m", "-XX:+UseG1GC")));
+
+            // two workers get 2 GB and a processor each
+            options = resolver.resolve(2);
+            assertTrue(options.containsAll(Arrays.asList("-Xmx1536m", "-XX:+UseSerialGC")));
+        }
+
+        // no CPU quota
+        write("cpu.max", "max 100000");
+        assertEquals(Runtime.getRuntime().availableProcessors(), new JvmOptionResolver(config, root)
+            .getProcessors(), 0);
+    }
+
+    @Test
+    public void testCgroupV1AndProfile() throws Exception {
+        new File(root, "memory").mkdirs();
+        new File(root, "cpu,cpuacct").mkdirs();
+        write("memory/memory.limit_in_bytes", String.valueOf(Long.MAX_VALUE - 4095));
+        write("cpu,cpuacct/cpu.cfs_quota_us", "-1");
+        write("cpu,cpuacct/cpu.cfs_period_us", "100000");
+
+        // no limits
+        JvmOptionResolver resolver = new JvmOptionResolver(config, root);
+        assertEquals("host", resolver.getSource());
+
+        write("memory/memory.limit_in_bytes", String.valueOf(512 * MB));
+        resolver = new JvmOptionResolver(config, root);
+        assertEquals("cgroup v1", resolver.getSource());
+        if (resolver.getMemory() == 512 * MB) {
+            // 64 MB metaspace and 128 MB native memory leave 320 MB
+            assertTrue(resolver.resolve(1).containsAll(Arrays.asList("-Xmx320m", "-Xss256k",
+                "-XX:MaxMetaspaceSize=64m", "-XX:+UseSerialGC")));
+        }
+
+        config.setProperty("launcher.jvm.gc", "parallel");
+        config.setProperty("launcher.jvm.heap.fixed", "false");
+        JavaCommand command = new JavaCommand("java", Arrays.asList("-Xmx1g", "-XX:PermSize=64m",
+            "-XX:+UseConcMarkSweepGC", "-Dfile.encoding=UTF-8"), "bootstrap.jar", "Launcher");
+        resolver.apply(command, 1);
+        List<String> line = command.toList();
+        assertFalse(line.contains("-Xmx1g"));
+        assertFalse(line.contains("-XX:PermSize=64m"));
+        assertFalse(line.contains("-XX:+UseConcMarkSweepGC"));
+        assertTrue(line.contains("-Dfile.encoding=UTF-8"));
+        assertTrue(line.contains("-XX:+UseParallelGC"));
+        assertTrue(line.contains("-D" + JvmOptionResolver.RESOLVED + "=true"));
+        assertFalse(command.hasOption("-Xms"));
+    }
+
+    @Test
+    public void testSmallLimit() throws Exception {
+        write("cgroup.controllers", "cpu memory");
+        write("memory.max", String.valueOf(128 * MB));
+
+        JvmOptionResolver resolver = new JvmOptionResolver(config, root);
+        if (resolver.getMemory() == 128 * MB) {
+            // a quarter is reserved, the heap and metaspace take the rest
+            List<String> options = resolver.resolve(1);
+            assertTrue(options.containsAll(Arrays.asList("-Xmx32m", "-XX:MaxMetaspaceSize=64m")));
+
+            // two workers can't get the least heap and metaspace from 64 MB each
+            assertNull(resolver.resolve(2));
+            JavaCommand command = new JavaCommand("java", Arrays.asList("-Xmx1g"), "bootstrap.jar", "Launcher");
+            assertTrue(resolver.apply(command, 2).toList().contains("-Xmx1g"));
+            assertFalse(command.hasOption("-D" + JvmOptionResolver.RESOLVED + "="));
+        }
+    }
+
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(root, name));
+        try {
+            out.write((content + "\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LauncherExecutorsTest {
+
+    @Test
+    public void testNamedAndInstrumented() throws Exception {
+        ClassLoader classLoader = new URLClassLoader(new URL[0]);
+        LauncherExecutors executors = new LauncherExecutors("test", classLoader, 2, 4, 1);
+        ExecutorService cpu = executors.getCpuExecutor();
+        assertSame(cpu, executors.getCpuExecutor());
+
+        Future<Thread> thread = cpu.submit(new Callable<Thread>() {
+
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        assertTrue(thread.get().getName().startsWith("test-cpu-"));
+        assertSame(classLoader, thread.get().getContextClassLoader());
+
+        final CountDownLatch ticks = new CountDownLatch(3);
+        executors.getScheduledExecutor().scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                ticks.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+
+        if (!LauncherExecutors.isVirtualThreadSupported()) {
+            assertSame(executors.getIoExecutor(), executors.getVirtualThreadExecutor());
+        } else {
+            thread = executors.getVirtualThreadExecutor().submit(new Callable<Thread>() {
+
+                @Override
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            });
+            assertTrue(thread.get().getName().startsWith("test-virtual-"));
+            assertSame(classLoader, thread.get().getContextClassLoader());
+        }
+
+        // the periodic task doesn't keep the scheduled executor alive
+        assertTrue(executors.shutdown(5000));
+        Map<String, Long> stats = executors.getStats();
+        assertEquals(Long.valueOf(1), stats.get("cpu.submitted"));
+        assertEquals(Long.valueOf(1), stats.get("cpu.completed"));
+        assertEquals(Long.valueOf(1), stats.get("scheduled.submitted"));
+        assertTrue(stats.get("scheduled.completed") >= 3);
+        assertTrue(executors.report().contains("executor.cpu.task.nanos="));
+
+        try {
+            cpu.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("the executor is shut down");
+        } catch (RejectedExecutionException e) {
+            assertEquals(Long.valueOf(1), executors.getStats().get("cpu.rejected"));
+            assertEquals(Long.valueOf(1), executors.getStats().get("cpu.failed"));
+        }
+        // the virtual thread executor, or the I/O executor before java 21, is shut down with the others
+        assertTrue(executors.getVirtualThreadExecutor().isShutdown());
+    }
+
+    @Test
+    public void testShutdownInterruptsRunningTasks() throws Exception {
+        LauncherExecutors executors = new LauncherExecutors("test", null, 1, 1, 1);
+        final CountDownLatch running = new CountDownLatch(1);
+        executors.getIoExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    // shut down
+                }
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        long begin = System.currentTimeMillis();
+        assertTrue(executors.shutdown(200));
+        assertTrue(System.currentTimeMillis() - begin < 5000);
+        assertEquals(Long.valueOf(1), executors.getStats().get("io.completed"));
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LibraryWatcherTest {
+
+    @Test
+    public void testJarChangesAreCoalesced() throws Exception {
+        File lib = File.createTempFile("lib", "");
+        lib.delete();
+        lib.mkdirs();
+
+        final Semaphore changes = new Semaphore(0);
+        LibraryWatcher watcher = new LibraryWatcher(lib, 500, new Runnable() {
+
+            @Override
+            public void run() {
+                changes.release();
+            }
+        });
+        watcher.start();
+        try {
+            // other files are ignored
+            touch(new File(lib, "readme.txt"));
+            assertFalse(changes.tryAcquire(1500, TimeUnit.MILLISECONDS));
+
+            // a deploy of several jars is one change
+            touch(new File(lib, "a.jar"));
+            touch(new File(lib, "b.jar"));
+            assertTrue(changes.tryAcquire(10, TimeUnit.SECONDS));
+            assertFalse(changes.tryAcquire(1500, TimeUnit.MILLISECONDS));
+        } finally {
+            watcher.stop();
+            for (File file : lib.listFiles()) {
+                file.delete();
+            }
+            lib.delete();
+        }
+    }
+
+    private static void touch(File file) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(1);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LifecycleManagerTest {
+
+    private File home;
+
+    private String launcherHome;
+
+    @Before
+    public void setUp() throws Exception {
+        home = File.createTempFile("lifecycle", "");
+        home.delete();
+        home.mkdirs();
+        launcherHome = System.getProperty("launcher.home");
+        System.setProperty("launcher.home", home.getPath());
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+    }
+
+    @After
+    public void tearDown() {
+        if (launcherHome == null) {
+            System.clearProperty("launcher.home");
+        } else {
+            System.setProperty("launcher.home", launcherHome);
+        }
+        System.clearProperty("launcher.config");
+        delete(home);
+    }
+
+    @Test
+    public void testFailedRedeployKeepsGeneration() throws Exception {
+        Configuration config = new Configuration();
+        config.setProperty("apps.test.application.activator", Store.class.getName() + "," + Server.class.getName());
+        config.setProperty("apps.test.application.classpath", "");
+        LifecycleManager lifecycle = new LifecycleManager(config.forApplication("test"), new StartupReport(), "test",
+            getClass().getClassLoader());
+        lifecycle.start();
+        assertEquals(LifecycleState.RUNNING, lifecycle.getState());
+        assertEquals(2, Store.starts.get() + Server.starts.get());
+
+        // the new generation fails in init, before its activator pool is created
+        Server.failInit = true;
+        try {
+            assertEquals("REDEPLOYING", lifecycle.redeploy());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (lifecycle.isRedeploying() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            Server.failInit = false;
+        }
+
+        assertEquals(LifecycleState.RUNNING, lifecycle.getState());
+        assertEquals(0, lifecycle.getGeneration());
+        assertEquals(0, Store.stops.get() + Server.stops.get());
+
+        // the running generation is still the one stopped
+        lifecycle.stopApplication();
+        assertEquals(1, Store.stops.get());
+        assertEquals(1, Server.stops.get());
+    }
+
+    @Test
+    public void testStopWaitsWithoutBudget() throws Exception {
+        ServerSocket probe = new ServerSocket(0);
+        int port = probe.getLocalPort();
+        probe.close();
+
+        Configuration config = new Configuration();
+        config.setProperty("application.activator", SlowStop.class.getName());
+        config.setProperty("application.classpath", "");
+        config.setProperty("lifecycle.listen.enabled", "true");
+        config.setProperty("lifecycle.listen.port", String.valueOf(port));
+        final LifecycleManager lifecycle = new LifecycleManager(config);
+        Thread launcher = new Thread("launcher") {
+
+            @Override
+            public void run() {
+                try {
+                    lifecycle.start();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        launcher.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!lifecycle.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(lifecycle.isReady());
+
+        final List<String> messages = new ArrayList<String>();
+        Handler handler = new Handler() {
+
+            @Override
+            public void publish(LogRecord record) {
+                synchronized (messages) {
+                    messages.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(LifecycleManager.class.getName());
+        logger.addHandler(handler);
+        try {
+            // the activator stops slower than the command read timeout and there is no shutdown budget
+            new LifecycleManager(config).stop();
+        } finally {
+            logger.removeHandler(handler);
+        }
+        launcher.join(5000);
+
+        assertFalse(launcher.isAlive());
+        assertEquals(1, SlowStop.stops.get());
+        synchronized (messages) {
+            assertTrue(messages.toString(), messages.contains("Activator is stopped"));
+        }
+    }
+
+    @Test
+    public void testWarmupTaskConstructorFailure() throws Exception {
+        Configuration config = new Configuration();
+        config.setProperty("application.activator", Idle.class.getName());
+        config.setProperty("application.classpath", "");
+        config.setProperty("lifecycle.warmup.tasks", FailingTask.class.getName());
+        LifecycleManager lifecycle = new LifecycleManager(config);
+        try {
+            lifecycle.train(0);
+            fail("the warm-up task can't be created");
+        } catch (IllegalStateException e) {
+            // reported with the exception of the constructor
+            assertSame(FailingTask.FAILURE, e.getCause());
+        } finally {
+            lifecycle.stopActivator();
+        }
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static class Store {
+
+        static final AtomicInteger starts = new AtomicInteger();
+
+        static final AtomicInteger stops = new AtomicInteger();
+
+        public void start() {
+            starts.incrementAndGet();
+        }
+
+        public void stop() {
+            stops.incrementAndGet();
+        }
+    }
+
+    public static class Idle {
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+    }
+
+    public static class FailingTask implements WarmupTask {
+
+        static final IllegalArgumentException FAILURE = new IllegalArgumentException("no warm-up");
+
+        public FailingTask() {
+            throw FAILURE;
+        }
+
+        @Override
+        public void warmup() {
+        }
+    }
+
+    public static class SlowStop {
+
+        static final AtomicInteger stops = new AtomicInteger();
+
+        public void start() {
+        }
+
+        public void stop() throws InterruptedException {
+            Thread.sleep(2500);
+            stops.incrementAndGet();
+        }
+    }
+
+    @DependsOn("com.dinstone.launcher.LifecycleManagerTest$Store")
+    public static class Server {
+
+        static final AtomicInteger starts = new AtomicInteger();
+
+        static final AtomicInteger stops = new AtomicInteger();
+
+        static volatile boolean failInit;
+
+        public void init(LauncherContext context) {
+            if (failInit) {
+                throw new IllegalStateException("init failure");
+            }
+        }
+
+        public void start() {
+            starts.incrementAndGet();
+        }
+
+        public void stop() {
+            stops.incrementAndGet();
+        }
+    }
+
+}
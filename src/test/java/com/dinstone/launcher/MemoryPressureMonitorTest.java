@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MemoryPressureMonitorTest {
+
+    @Test
+    public void testListenersAreNotified() throws Exception {
+        final CountDownLatch notified = new CountDownLatch(2);
+        final List<MemoryPressure> pressures = new ArrayList<MemoryPressure>();
+        final List<MemoryPressureListener> listeners = new ArrayList<MemoryPressureListener>();
+        listeners.add(new MemoryPressureListener() {
+
+            @Override
+            public void memoryPressure(MemoryPressure pressure, String pool, MemoryUsage usage) throws Exception {
+                throw new IllegalStateException("failed to shed");
+            }
+        });
+        listeners.add(new MemoryPressureListener() {
+
+            @Override
+            public void memoryPressure(MemoryPressure pressure, String pool, MemoryUsage usage) {
+                pressures.add(pressure);
+                notified.countDown();
+            }
+        });
+
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(new MemoryPressureMonitor.Listeners() {
+
+            @Override
+            public List<MemoryPressureListener> get() {
+                return listeners;
+            }
+        }, 0, 0, 0);
+        monitor.start();
+        try {
+            MemoryUsage usage = new MemoryUsage(0, 90, 100, 100);
+            monitor.crossed(MemoryPressure.WARNING, "Test Old Gen", usage);
+            monitor.crossed(MemoryPressure.CRITICAL, "Test Old Gen", usage);
+            assertTrue(notified.await(5, TimeUnit.SECONDS));
+        } finally {
+            monitor.stop();
+        }
+
+        // one crossing at a time, in order
+        assertEquals(MemoryPressure.WARNING, pressures.get(0));
+        assertEquals(MemoryPressure.CRITICAL, pressures.get(1));
+
+        Map<String, Long> stats = monitor.getStats();
+        assertEquals(Long.valueOf(1), stats.get("test.old.gen.warning.count"));
+        assertEquals(Long.valueOf(1), stats.get("test.old.gen.critical.count"));
+        assertEquals(Long.valueOf(2), stats.get("reaction.count"));
+        assertEquals(Long.valueOf(2), stats.get("reaction.failures"));
+        assertTrue(stats.get("reaction.max.nanos") > 0);
+        assertTrue(monitor.report().contains("memory.pressure.reaction.count=2"));
+    }
+
+    @Test
+    public void testThresholdsAreSetAndCleared() {
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(new MemoryPressureMonitor.Listeners() {
+
+            @Override
+            public List<MemoryPressureListener> get() {
+                return new ArrayList<MemoryPressureListener>();
+            }
+        }, 95, 90, 0);
+        monitor.start();
+        int set = 0;
+        try {
+            for (MemoryPoolMXBean pool : tenuredPools()) {
+                if (pool.getUsage().getMax() > 0) {
+                    assertTrue(pool.getUsageThreshold() > 0);
+                    set++;
+                }
+            }
+        } finally {
+            monitor.stop();
+        }
+
+        for (MemoryPoolMXBean pool : tenuredPools()) {
+            assertEquals(0, pool.getUsageThreshold());
+        }
+        // the warning and critical crossings of each pool and the reaction stats
+        assertEquals(2 * set + 4, monitor.getStats().size());
+    }
+
+    private static List<MemoryPoolMXBean> tenuredPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PauseMonitorTest {
+
+    @Test
+    public void testHistogramPercentiles() {
+        PauseHistogram histogram = new PauseHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(5000000);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(5000000, histogram.getMax());
+
+        // within the precision of the buckets
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 501 && p50 <= 501 * 17 / 16);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(String.valueOf(p99), p99 >= 991 && p99 <= 991 * 17 / 16);
+        assertEquals(5000000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+
+        // values below the buckets are exact
+        PauseHistogram small = new PauseHistogram();
+        small.record(3);
+        assertEquals(3, small.getValueAtPercentile(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testGcPausesAndHiccups() throws Exception {
+        PauseMonitor monitor = new PauseMonitor(1, 0);
+        monitor.start();
+        try {
+            System.gc();
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((monitor.getGcPauses().getCount() == 0 || monitor.getHiccups().getCount() < 10)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } finally {
+            monitor.stop();
+        }
+
+        Map<String, Long> stats = monitor.getStats();
+        assertTrue(stats.get("gc.count") > 0);
+        assertTrue(stats.get("hiccup.count") >= 10);
+        assertTrue(stats.get("hiccup.max.us") >= stats.get("hiccup.p99.us"));
+        assertTrue(monitor.report().contains("pause.gc.count="));
+
+        // the hiccup thread is stopped
+        long count = monitor.getHiccups().getCount();
+        Thread.sleep(50);
+        assertEquals(count, monitor.getHiccups().getCount());
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class ShutdownWatchdogTest {
+
+    @Test
+    public void testReport() throws Exception {
+        File report = File.createTempFile("shutdown", ".properties");
+        try {
+            long since = System.currentTimeMillis();
+            ShutdownWatchdog watchdog = new ShutdownWatchdog(60000, report);
+            watchdog.arm();
+            long begin = watchdog.begin("stop.demo");
+            watchdog.end("stop.demo", begin);
+            watchdog.finish();
+
+            Properties properties = ShutdownWatchdog.readReport(report, since);
+            assertNotNull(properties);
+            assertEquals(ShutdownWatchdog.STATUS_COMPLETED, properties.getProperty("shutdown.status"));
+            assertEquals("60000", properties.getProperty("shutdown.budget.ms"));
+            assertNotNull(properties.getProperty("phase.stop.demo.nanos"));
+            assertNull(properties.getProperty("shutdown.overrun.phase"));
+
+            // an earlier shutdown is not reported
+            assertNull(ShutdownWatchdog.readReport(report, System.currentTimeMillis() + 1000));
+        } finally {
+            report.delete();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class StartupReportTest {
+
+    @Test
+    public void testPhases() throws Exception {
+        StartupReport report = new StartupReport();
+        assertEquals(-1, report.getTotalNanos());
+
+        long begin = report.begin();
+        Thread.sleep(5);
+        long load = report.record("config.load", begin);
+        begin = report.begin();
+        long first = report.record("activator.load", begin);
+        begin = report.begin();
+        long second = report.record("activator.load", begin);
+        report.finish();
+
+        // in the order they were run, a repeated phase is summed
+        Map<String, Long> phases = report.getPhases();
+        assertEquals(Arrays.asList("config.load", "activator.load"), new ArrayList<String>(phases.keySet()));
+        assertEquals(Long.valueOf(load), phases.get("config.load"));
+        assertTrue(load >= 5000000);
+        assertEquals(Long.valueOf(first + second), phases.get("activator.load"));
+        assertTrue(report.getTotalNanos() >= load + first + second);
+
+        File file = File.createTempFile("startup", ".properties");
+        try {
+            report.write(file);
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            assertEquals(String.valueOf(report.getStartTime()), properties.getProperty("startup.time"));
+            assertEquals(String.valueOf(load), properties.getProperty("phase.config.load.nanos"));
+            assertEquals(String.valueOf(report.getTotalNanos()), properties.getProperty("startup.total.nanos"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMXBeanAttributes() throws Exception {
+        System.setProperty("launcher.config", "file:src/test/resources/config/launcher.properties");
+        try {
+            StartupReport report = new StartupReport();
+            LauncherMonitor monitor = new LauncherMonitor(new LifecycleManager(new Configuration(), report));
+            assertEquals(-1, monitor.getStartupNanos());
+
+            report.record("listener.bind", report.begin());
+            report.finish();
+            assertEquals(report.getStartTime(), monitor.getStartTime());
+            assertEquals(report.getTotalNanos(), monitor.getStartupNanos());
+            assertEquals(report.getPhases(), monitor.getStartupPhases());
+            assertTrue(monitor.getStartupPhases().containsKey("listener.bind"));
+        } finally {
+            System.clearProperty("launcher.config");
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class WarmupRunnerTest {
+
+    @Test
+    public void testIterations() throws Exception {
+        CountingTask first = new CountingTask();
+        CountingTask second = new CountingTask();
+        WarmupRunner runner = new WarmupRunner(Arrays.<WarmupTask> asList(first, second), 4, 0, 1000,
+            new NamedThreadFactory("warmup", true));
+        runner.start().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1000, first.count.get());
+        assertEquals(1000, second.count.get());
+        assertEquals(2000, runner.getIterations());
+        assertEquals(0, runner.getFailures());
+    }
+
+    @Test
+    public void testDurationAndFailures() throws Exception {
+        WarmupTask failing = new WarmupTask() {
+
+            @Override
+            public void warmup() throws Exception {
+                Thread.sleep(1);
+                throw new IllegalStateException("cold");
+            }
+        };
+        WarmupRunner runner = new WarmupRunner(Arrays.asList(failing), 2, 200, 0, new NamedThreadFactory("warmup",
+            true));
+        long begin = System.currentTimeMillis();
+        runner.start().get(5, TimeUnit.SECONDS);
+
+        assertTrue(System.currentTimeMillis() - begin >= 200);
+        assertTrue(runner.getIterations() > 0);
+        assertEquals(runner.getIterations(), runner.getFailures());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CountingTask task = new CountingTask();
+        WarmupRunner runner = new WarmupRunner(Arrays.<WarmupTask> asList(task), 1, 0, Long.MAX_VALUE,
+            new NamedThreadFactory("warmup", true));
+        Future<Void> done = runner.start();
+        runner.cancel();
+        done.get(5, TimeUnit.SECONDS);
+        assertTrue(runner.isCancelled());
+    }
+
+    private static class CountingTask implements WarmupTask {
+
+        final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void warmup() {
+            count.incrementAndGet();
+        }
+    }
+
+}
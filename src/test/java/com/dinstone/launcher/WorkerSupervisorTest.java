@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012~2013 dinstone<dinstone@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dinstone.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WorkerSupervisorTest {
+
+    @Test
+    public void testCrashedWorkerIsRestartedWithBackoff() throws Exception {
+        Processes processes = new Processes("exit 3");
+        WorkerSupervisor supervisor = new WorkerSupervisor(processes, 1, 100, 200, 400, 1000);
+        supervisor.start();
+        Thread.sleep(1500);
+        supervisor.stop();
+
+        // starts at 0, ~200, ~600, ~1000 ms: the backoff doubles up to its maximum
+        int starts = processes.starts.size();
+        assertTrue("starts " + starts, starts >= 3 && starts <= 5);
+        assertTrue(supervisor.report().contains("worker.0.restarts=" + (starts - 1) + "\n")
+                || supervisor.report().contains("worker.0.restarts=" + starts + "\n"));
+        assertTrue(supervisor.report().contains("worker.0.state=STOPPED\n"));
+    }
+
+    @Test
+    public void testRollingRestartAndStop() throws Exception {
+        Processes processes = new Processes("sleep 30");
+        WorkerSupervisor supervisor = new WorkerSupervisor(processes, 2, 100, 100, 100, 5000);
+        supervisor.start();
+        Thread.sleep(500);
+        assertEquals(2, processes.starts.size());
+        assertTrue(supervisor.report().contains("worker.1.state=RUNNING\n"));
+
+        assertEquals(WorkerSupervisor.MESSAGE_RESTARTING, supervisor.rollingRestart());
+        assertEquals(WorkerSupervisor.MESSAGE_BUSY, supervisor.rollingRestart());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (supervisor.report().contains("rolling.restart=true") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        // the workers were replaced one at a time, without counting as restarts
+        assertEquals(4, processes.starts.size());
+        assertEquals(Integer.valueOf(0), processes.starts.get(2));
+        assertEquals(Integer.valueOf(1), processes.starts.get(3));
+        assertTrue(supervisor.report().contains("worker.0.restarts=0\n"));
+        assertFalse(processes.processes.get(0).isAlive());
+
+        supervisor.stop();
+        for (Process process : processes.processes) {
+            assertFalse(process.isAlive());
+        }
+        assertEquals(WorkerSupervisor.MESSAGE_STOPPING, supervisor.rollingRestart());
+    }
+
+    private static class Processes implements WorkerSupervisor.Workers {
+
+        final String script;
+
+        final List<Integer> starts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final List<Process> processes = Collections.synchronizedList(new ArrayList<Process>());
+
+        Processes(String script) {
+            this.script = script;
+        }
+
+        @Override
+        public Process start(int id) throws IOException {
+            starts.add(id);
+            Process process = new ProcessBuilder("sh", "-c", script).start();
+            processes.add(process);
+            return process;
+        }
+
+        @Override
+        public SocketAddress address(int id) {
+            // no probe, a running process is ready
+            return null;
+        }
+    }
+
+}